@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2019 Johan Dykstrom
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package se.dykstrom.jppf.mandel.task;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time it takes to calculate one full frame, with and without the interior
+ * shortcuts (cardioid/bulb test and periodicity detection) in {@link ScalarKernel#calcPoint}.
+ *
+ * @author Johan Dykstrom
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CalcPointBenchmark {
+
+    private static final int SIZE = 500;
+
+    private static final int NUM_ITERATIONS = 100;
+
+    /** The view to calculate, see {@link ViewPreset}. */
+    @Param({"INITIAL", "SEAHORSE", "INTERIOR", "MINIBROT"})
+    public ViewPreset view;
+
+    private double minX;
+    private double minY;
+    private double scale;
+
+    @Setup
+    public void setUp() {
+        minX = view.getMinX();
+        minY = view.getMinY();
+        scale = view.getScale(SIZE);
+    }
+
+    @Benchmark
+    public long frameWithShortcuts() {
+        long sum = 0;
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                sum += ScalarKernel.calcPoint(minX + x * scale, minY + y * scale, NUM_ITERATIONS);
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long frameExhaustive() {
+        long sum = 0;
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                sum += calcPointExhaustive(minX + x * scale, minY + y * scale);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * The escape time algorithm without any interior shortcuts, used as the baseline.
+     */
+    private static int calcPointExhaustive(double x0, double y0) {
+        double x = x0;
+        double y = y0;
+
+        int iteration = 0;
+
+        while ((x * x + y * y <= (2 * 2)) && (iteration < NUM_ITERATIONS)) {
+            double tempX = x * x - y * y + x0;
+            y = 2 * x * y + y0;
+            x = tempX;
+            iteration++;
+        }
+
+        return iteration;
+    }
+}
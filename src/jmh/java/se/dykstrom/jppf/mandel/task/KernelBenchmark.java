@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2019 Johan Dykstrom
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package se.dykstrom.jppf.mandel.task;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the throughput of the scalar and the vectorized kernels, calculating one full frame
+ * per operation. Before measuring, the setup verifies that both kernels return identical results.
+ *
+ * @author Johan Dykstrom
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+@State(Scope.Benchmark)
+public class KernelBenchmark {
+
+    private static final int SIZE = 500;
+
+    private static final int NUM_ITERATIONS = 256;
+
+    /** The view to calculate, see {@link ViewPreset}. */
+    @Param({"INITIAL", "SEAHORSE", "INTERIOR", "MINIBROT", "DEEP"})
+    public ViewPreset view;
+
+    @Param({"scalar", "vector"})
+    public String kernelType;
+
+    private EscapeTimeKernel kernel;
+
+    private final int[] iterations = new int[SIZE];
+    private final int[] fractions = new int[SIZE];
+
+    private double minX;
+    private double minY;
+    private double scale;
+
+    @Setup
+    public void setUp() {
+        minX = view.getMinX();
+        minY = view.getMinY();
+        scale = view.getScale(SIZE);
+
+        kernel = "vector".equals(kernelType) ? Kernels.getVectorKernel() : Kernels.getScalarKernel();
+        if (kernel == null) {
+            throw new IllegalStateException("Vector kernel not available");
+        }
+        verifyResults();
+    }
+
+    /**
+     * Verifies that the kernel under test returns exactly the same results as the scalar kernel.
+     */
+    private void verifyResults() {
+        final EscapeTimeKernel reference = Kernels.getScalarKernel();
+        final int[] expected = new int[SIZE];
+        final int[] expectedFractions = new int[SIZE];
+        for (int y = 0; y < SIZE; y++) {
+            reference.calcLine(minX, minY + y * scale, scale, 0, NUM_ITERATIONS, expected, expectedFractions);
+            kernel.calcLine(minX, minY + y * scale, scale, 0, NUM_ITERATIONS, iterations, fractions);
+            if (!Arrays.equals(expected, iterations) || !Arrays.equals(expectedFractions, fractions)) {
+                throw new IllegalStateException("Kernel " + kernelType + " differs from scalar kernel on line " + y);
+            }
+        }
+    }
+
+    @Benchmark
+    public int frame() {
+        int sum = 0;
+        for (int y = 0; y < SIZE; y++) {
+            kernel.calcLine(minX, minY + y * scale, scale, 0, NUM_ITERATIONS, iterations, fractions);
+            sum += iterations[y];
+        }
+        return sum;
+    }
+}
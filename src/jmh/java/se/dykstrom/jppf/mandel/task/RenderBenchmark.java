@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2019 Johan Dykstrom
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package se.dykstrom.jppf.mandel.task;
+
+import org.apache.log4j.Level;
+import org.apache.log4j.LogManager;
+import org.openjdk.jmh.annotations.*;
+import se.dykstrom.jppf.mandel.model.ImageAttributes;
+import se.dykstrom.jppf.mandel.model.Line;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of calculating one full frame, divided into tiles, using the same
+ * tasks as the grid nodes. This includes the kernel, the render mode, and packing the results
+ * into lines. Run with {@code -prof gc} to see the allocation rate.
+ *
+ * @author Johan Dykstrom
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RenderBenchmark {
+
+    private static final int TILE_SIZE = TilePartitioner.DEFAULT_TILE_SIZE;
+
+    /** The view to calculate, see {@link ViewPreset}. */
+    @Param({"INITIAL", "SEAHORSE", "INTERIOR", "DEEP"})
+    public ViewPreset view;
+
+    /** The width and height of the image in pixels. */
+    @Param({"250", "1000"})
+    public int size;
+
+    @Param({"256", "4096"})
+    public int maxIterations;
+
+    @Param({"EXHAUSTIVE", "MARIANI_SILVER"})
+    public RenderMode renderMode;
+
+    private List<Parameters> parametersList;
+
+    @Setup
+    public void setUp() {
+        // The tasks log each tile, which would distort the measurements
+        LogManager.getLogger("se.dykstrom").setLevel(Level.WARN);
+
+        final ImageAttributes imageAttributes = view.getImageAttributes(size, maxIterations);
+        parametersList = new TilePartitioner(TILE_SIZE).partition(size, size, imageAttributes);
+        parametersList.replaceAll(parameters -> parameters.withRenderMode(renderMode));
+    }
+
+    @Benchmark
+    public int frame() {
+        int lines = 0;
+        for (final Parameters parameters : parametersList) {
+            final TileTask task = TileTask.create("benchmark", parameters);
+            task.run();
+            final List<Line> result = task.getResult();
+            lines += result.size();
+        }
+        return lines;
+    }
+}
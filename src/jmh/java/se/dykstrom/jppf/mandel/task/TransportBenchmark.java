@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2019 Johan Dykstrom
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package se.dykstrom.jppf.mandel.task;
+
+import org.apache.log4j.LogManager;
+import org.openjdk.jmh.annotations.*;
+import se.dykstrom.jppf.mandel.model.ImageAttributes;
+import se.dykstrom.jppf.mandel.model.Line;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of serializing and deserializing the objects sent between the client and
+ * the nodes: the parameters of a tile, the task sent to a node, the lines calculated for the
+ * tile, and the task returned from the node with the lines as result. The number of
+ * serialized bytes per second is reported as a secondary result, from which the size of the
+ * serialized lines can be calculated.
+ *
+ * @author Johan Dykstrom
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransportBenchmark {
+
+    /** The width and height of the image the tile is taken from. */
+    private static final int IMAGE_SIZE = 1000;
+
+    /** The view to calculate, see {@link ViewPreset}. */
+    @Param({"INITIAL", "SEAHORSE", "INTERIOR"})
+    public ViewPreset view;
+
+    /** The width and height of the tile in pixels. */
+    @Param({"64", "256"})
+    public int tileSize;
+
+    @Param({"255", "4096"})
+    public int maxIterations;
+
+    private Parameters parameters;
+    private List<Line> lines;
+    private byte[] serializedLines;
+
+    /** A task as it is sent to a node. */
+    private TileTask task;
+    private byte[] serializedTask;
+
+    /** A task as it is returned from a node, with the calculated lines as result. */
+    private TileTask result;
+    private byte[] serializedResult;
+
+    /**
+     * Counts the number of serialized bytes.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        // The tasks log each tile, which would distort the measurements
+        LogManager.getLogger("se.dykstrom").setLevel(org.apache.log4j.Level.WARN);
+
+        // Use a tile from the middle of the image
+        final ImageAttributes imageAttributes = view.getImageAttributes(IMAGE_SIZE, maxIterations);
+        final int position = (IMAGE_SIZE - tileSize) / 2;
+        parameters = new Parameters(position, position, tileSize, tileSize, imageAttributes);
+        // The image attributes are sent once per job, and not with the tasks, see TaskSpawner
+        task = TileTask.create("benchmark", parameters);
+        task.shareImageAttributes();
+        serializedTask = serialize(task);
+        result = TileTask.create("benchmark", parameters);
+        result.shareImageAttributes();
+        result.run();
+        lines = result.getResult();
+        serializedLines = serialize(lines);
+        serializedResult = serialize(result);
+    }
+
+    @Benchmark
+    public byte[] serializeLines(Counters counters) throws IOException {
+        final byte[] bytes = serialize(lines);
+        counters.bytes += bytes.length;
+        return bytes;
+    }
+
+    @Benchmark
+    public Object deserializeLines() throws IOException, ClassNotFoundException {
+        return deserialize(serializedLines);
+    }
+
+    @Benchmark
+    public byte[] serializeParameters(Counters counters) throws IOException {
+        final byte[] bytes = serialize(parameters);
+        counters.bytes += bytes.length;
+        return bytes;
+    }
+
+    @Benchmark
+    public byte[] serializeTask(Counters counters) throws IOException {
+        final byte[] bytes = serialize(task);
+        counters.bytes += bytes.length;
+        return bytes;
+    }
+
+    @Benchmark
+    public Object deserializeTask() throws IOException, ClassNotFoundException {
+        return deserialize(serializedTask);
+    }
+
+    @Benchmark
+    public byte[] serializeResult(Counters counters) throws IOException {
+        final byte[] bytes = serialize(result);
+        counters.bytes += bytes.length;
+        return bytes;
+    }
+
+    @Benchmark
+    public Object deserializeResult() throws IOException, ClassNotFoundException {
+        return deserialize(serializedResult);
+    }
+
+    private static byte[] serialize(Object object) throws IOException {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(buffer)) {
+            out.writeObject(object);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static Object deserialize(byte[] bytes) throws IOException, ClassNotFoundException {
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2019 Johan Dykstrom
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package se.dykstrom.jppf.mandel.task;
+
+import se.dykstrom.jppf.mandel.model.Coordinates;
+import se.dykstrom.jppf.mandel.model.ImageAttributes;
+
+/**
+ * The views used by the benchmarks. Each view is a square area of the complex plane, defined by
+ * its top-left corner and its size, and has different characteristics:
+ * <ul>
+ *     <li>INITIAL - the initial view, with a mix of interior and quickly escaping points.</li>
+ *     <li>SEAHORSE - a zoom into seahorse valley, where most points escape slowly.</li>
+ *     <li>INTERIOR - a zoom on the border of the main cardioid, where most points are interior.</li>
+ *     <li>MINIBROT - a zoom on the minibrot at -1.75, with interior points outside the cardioid and bulb.</li>
+ *     <li>DEEP - a deep zoom close to the limit of double precision, with very slow escapes.</li>
+ * </ul>
+ *
+ * @author Johan Dykstrom
+ */
+public enum ViewPreset {
+
+    INITIAL(-2.0, -1.5, 3.0),
+    SEAHORSE(-0.7488, 0.0977, 0.005),
+    INTERIOR(-0.9, -0.5, 1.0),
+    MINIBROT(-1.7608, -0.006, 0.012),
+    DEEP(-0.743643887037151 - 0.5e-11, 0.131825904205330 - 0.5e-11, 1e-11);
+
+    private final double minX;
+    private final double minY;
+    private final double size;
+
+    ViewPreset(double minX, double minY, double size) {
+        this.minX = minX;
+        this.minY = minY;
+        this.size = size;
+    }
+
+    public double getMinX() {
+        return minX;
+    }
+
+    public double getMinY() {
+        return minY;
+    }
+
+    /**
+     * Returns the distance between two pixels, when showing this view in an image
+     * that is {@code imageSize} pixels wide.
+     */
+    public double getScale(int imageSize) {
+        return size / imageSize;
+    }
+
+    /**
+     * Returns the image attributes of this view, shown in an image that is {@code imageSize}
+     * pixels wide, using the given maximum number of iterations.
+     */
+    public ImageAttributes getImageAttributes(int imageSize, int maxIterations) {
+        return new ImageAttributes(new Coordinates(minX, minY), getScale(imageSize), maxIterations);
+    }
+}
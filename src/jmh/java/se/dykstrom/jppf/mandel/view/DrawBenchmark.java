@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2019 Johan Dykstrom
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package se.dykstrom.jppf.mandel.view;
+
+import org.openjdk.jmh.annotations.*;
+import se.dykstrom.jppf.mandel.model.Line;
+import se.dykstrom.jppf.mandel.task.EscapeTimeKernel;
+import se.dykstrom.jppf.mandel.task.Kernels;
+import se.dykstrom.jppf.mandel.task.ViewPreset;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of drawing one full frame of calculated lines in the panel,
+ * including clearing the panel before drawing.
+ *
+ * @author Johan Dykstrom
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class DrawBenchmark {
+
+    /** The view to draw, see {@link ViewPreset}. */
+    @Param({"INITIAL", "SEAHORSE"})
+    public ViewPreset view;
+
+    /** The width and height of the image in pixels. */
+    @Param({"500", "1000"})
+    public int size;
+
+    @Param({"255", "4096"})
+    public int maxIterations;
+
+    private final MandelPanel panel = new MandelPanel();
+
+    private final List<Line> lines = new ArrayList<>();
+
+    @Setup
+    public void setUp() {
+        final EscapeTimeKernel kernel = Kernels.getScalarKernel();
+        final double scale = view.getScale(size);
+        for (int y = 0; y < size; y++) {
+            final int[] iterations = new int[size];
+            final int[] fractions = new int[size];
+            kernel.calcLine(view.getMinX(), view.getMinY() + y * scale, scale, 0, maxIterations, iterations, fractions);
+            lines.add(new Line(0, y, iterations, fractions, maxIterations));
+        }
+    }
+
+    @Benchmark
+    public MandelPanel frame() {
+        panel.clear(size, size);
+        for (final Line line : lines) {
+            panel.draw(line, maxIterations);
+        }
+        return panel;
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2019 Johan Dykstrom
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package se.dykstrom.jppf.mandel.task;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+import static jdk.incubator.vector.VectorOperators.ADD;
+import static jdk.incubator.vector.VectorOperators.EQ;
+import static jdk.incubator.vector.VectorOperators.GT;
+import static jdk.incubator.vector.VectorOperators.LE;
+import static jdk.incubator.vector.VectorOperators.NE;
+
+/**
+ * An escape time kernel that uses the Java Vector API to calculate a lane-width of points in
+ * each loop. Lanes that have escaped, or that are found to be periodic, are masked out, and the
+ * loop continues until all lanes are done. The kernel performs exactly the same floating point
+ * operations, in the same order, as {@link ScalarKernel}, so the results are identical. The
+ * squared magnitude of each lane is kept when the lane escapes, and the fractions of the escape
+ * times are calculated from it using {@link ScalarKernel#smoothFraction}.
+ * <p>
+ * This class is compiled separately, and requires Java 16 or later. Use {@link Kernels} to
+ * create an instance.
+ *
+ * @author Johan Dykstrom
+ */
+public class VectorKernel implements EscapeTimeKernel {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    /**
+     * Checking if all lanes are done is expensive compared to one iteration, so it is only done
+     * every fourth iteration. Lanes that are done are masked out, so the extra iterations do not
+     * affect the result.
+     */
+    private static final int CHECK_MASK = 0x3;
+
+    /** The lane indices, 0, 1, 2, ..., used to calculate the pixel numbers of the lanes. */
+    private static final double[] IOTA = new double[SPECIES.length()];
+
+    static {
+        for (int i = 0; i < IOTA.length; i++) {
+            IOTA[i] = i;
+        }
+    }
+
+    @Override
+    public long calcLine(double minX, double y0, double scale, int firstX, int step, int maxIterations, int[] iterations, int[] fractions) {
+        final DoubleVector zero = DoubleVector.zero(SPECIES);
+        final DoubleVector one = DoubleVector.broadcast(SPECIES, 1.0);
+        final DoubleVector four = DoubleVector.broadcast(SPECIES, 2 * 2);
+        final DoubleVector max = DoubleVector.broadcast(SPECIES, maxIterations);
+        final DoubleVector offsets = DoubleVector.fromArray(SPECIES, IOTA, 0).mul(step);
+        final DoubleVector cy = DoubleVector.broadcast(SPECIES, y0);
+        final double[] counts = new double[SPECIES.length()];
+        final double[] magnitudes = new double[SPECIES.length()];
+        long performed = 0;
+
+        // The parts of the cardioid and bulb tests that only depend on Y
+        final DoubleVector y2 = cy.mul(cy);
+        final DoubleVector quarterY2 = y2.mul(0.25);
+
+        final int upperBound = SPECIES.loopBound(iterations.length);
+        int x = 0;
+        for (; x < upperBound; x += SPECIES.length()) {
+            final DoubleVector cx = offsets.add(firstX + x * step).mul(scale).add(minX);
+
+            // Lanes in the main cardioid or the period-2 bulb are done from the start
+            final DoubleVector xq = cx.sub(0.25);
+            final DoubleVector q = xq.mul(xq).add(y2);
+            final DoubleVector xp = cx.add(1.0);
+            final VectorMask<Double> interior = q.mul(q.add(xq)).compare(LE, quarterY2)
+                    .or(xp.mul(xp).add(y2).compare(LE, 0.0625));
+
+            // The count increment is one for active lanes, and zero for lanes that are done
+            DoubleVector count = zero.blend(max, interior);
+            DoubleVector increment = one.blend(zero, interior);
+            // The number of iterations performed by each lane, not reset for periodic lanes
+            DoubleVector work = zero;
+            // The squared magnitude of each lane when it escaped
+            DoubleVector magnitude = zero;
+
+            DoubleVector zx = cx;
+            DoubleVector zy = cy;
+            DoubleVector savedX = zx;
+            DoubleVector savedY = zy;
+            int nextSave = 2;
+
+            for (int iteration = 0; iteration < maxIterations; ) {
+                // Mask out lanes that have escaped, and stop when all lanes are done
+                final DoubleVector zx2 = zx.mul(zx);
+                final DoubleVector zy2 = zy.mul(zy);
+                final DoubleVector zz = zx2.add(zy2);
+                final VectorMask<Double> escaped = zz.compare(GT, four).and(increment.compare(NE, zero));
+                magnitude = magnitude.blend(zz, escaped);
+                increment = increment.blend(zero, escaped);
+                if ((iteration & CHECK_MASK) == 0 && increment.compare(NE, zero).not().allTrue()) {
+                    break;
+                }
+
+                // Lanes that are done keep iterating, but their count is not incremented
+                final DoubleVector tempX = zx2.sub(zy2).add(cx);
+                zy = zx.add(zx).mul(zy).add(cy);
+                zx = tempX;
+                iteration++;
+                count = count.add(increment);
+                work = work.add(increment);
+
+                // Active lanes that are periodic belong to the set
+                final VectorMask<Double> periodic = zx.compare(EQ, savedX)
+                        .and(zy.compare(EQ, savedY))
+                        .and(increment.compare(NE, zero));
+                count = count.blend(max, periodic);
+                increment = increment.blend(zero, periodic);
+                // Update the saved values without branching, to keep the vectors in registers
+                final VectorMask<Double> save = SPECIES.maskAll(iteration == nextSave);
+                savedX = savedX.blend(zx, save);
+                savedY = savedY.blend(zy, save);
+                if (iteration == nextSave) {
+                    nextSave <<= 1;
+                }
+            }
+
+            performed += (long) work.reduceLanes(ADD);
+            count.intoArray(counts, 0);
+            magnitude.intoArray(magnitudes, 0);
+            for (int i = 0; i < counts.length; i++) {
+                iterations[x + i] = (int) counts[i];
+                fractions[x + i] = (iterations[x + i] < maxIterations) ? ScalarKernel.smoothFraction(magnitudes[i]) : 0;
+            }
+        }
+
+        // Calculate any remaining points using the scalar kernel
+        for (; x < iterations.length; x++) {
+            final int result = ScalarKernel.iterate(minX + (firstX + x * step) * scale, y0, maxIterations);
+            iterations[x] = ScalarKernel.escapeTime(result, maxIterations);
+            fractions[x] = ScalarKernel.fraction(result);
+            performed += ScalarKernel.performedIterations(result);
+        }
+        return performed;
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2019 Johan Dykstrom
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package se.dykstrom.jppf.mandel;
+
+import se.dykstrom.jppf.mandel.model.Line;
+import se.dykstrom.jppf.mandel.view.MandelView;
+
+import javax.swing.*;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Subscribes to chunks of calculated lines, and draws them in the view as they arrive. The next
+ * chunk is not requested until the current chunk has been drawn on the event dispatch thread,
+ * so if drawing falls behind, the publisher will buffer, and eventually block, new chunks.
+ * Chunks that arrive after the image has been superseded by a newer image are discarded.
+ *
+ * @author Johan Dykstrom
+ */
+class LineSubscriber implements Flow.Subscriber<List<Line>> {
+
+    private final MandelView view;
+    private final int maxIterations;
+    private final BooleanSupplier isCurrent;
+
+    /** Completed when all chunks have been drawn. */
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+    private Flow.Subscription subscription;
+
+    /**
+     * Creates a new subscriber.
+     *
+     * @param view The view to draw in.
+     * @param maxIterations The maximum number of iterations used to calculate the lines.
+     * @param isCurrent Returns {@code true} as long as the image is the current image.
+     */
+    LineSubscriber(MandelView view, int maxIterations, BooleanSupplier isCurrent) {
+        this.view = view;
+        this.maxIterations = maxIterations;
+        this.isCurrent = isCurrent;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        this.subscription = subscription;
+        subscription.request(1);
+    }
+
+    @Override
+    public void onNext(List<Line> lines) {
+        SwingUtilities.invokeLater(() -> {
+            if (isCurrent.getAsBoolean()) {
+                view.drawLines(lines, maxIterations);
+            }
+            subscription.request(1);
+        });
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        completion.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        // Complete after any chunks that are still waiting to be drawn
+        SwingUtilities.invokeLater(() -> completion.complete(null));
+    }
+
+    /**
+     * Waits until all chunks have been drawn.
+     */
+    void awaitCompletion() throws InterruptedException, ExecutionException {
+        completion.get();
+    }
+}
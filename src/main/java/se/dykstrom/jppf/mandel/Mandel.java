@@ -17,6 +17,10 @@
 
 package se.dykstrom.jppf.mandel;
 
+import se.dykstrom.jppf.mandel.task.RenderBackend;
+import se.dykstrom.jppf.mandel.task.RenderBackends;
+import se.dykstrom.jppf.mandel.task.TaskSpawner;
+import se.dykstrom.jppf.mandel.task.TilePartitioner;
 import se.dykstrom.jppf.mandel.view.MandelView;
 
 import javax.swing.*;
@@ -29,12 +33,16 @@ import javax.swing.*;
 class Mandel {
 
     public static void main(String[] args) throws Exception {
-        int numberOfJobs = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+        int numberOfJobs = args.length > 0 ? Integer.parseInt(args[0]) : TaskSpawner.AUTOMATIC_JOBS;
+        int tileSize = args.length > 1 ? Integer.parseInt(args[1]) : TilePartitioner.DEFAULT_TILE_SIZE;
+
+        // Select the backend before showing the view, since connecting to the grid may take a while
+        RenderBackend backend = RenderBackends.createBackend(numberOfJobs);
 
         UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
         SwingUtilities.invokeLater(() -> {
             MandelView view = new MandelView();
-            new MandelController(view, numberOfJobs);
+            new MandelController(view, backend, tileSize);
             view.setVisible(true);
             view.setLocationRelativeTo(null);
         });
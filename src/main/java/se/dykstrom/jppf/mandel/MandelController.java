@@ -19,13 +19,21 @@ package se.dykstrom.jppf.mandel;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import se.dykstrom.jppf.mandel.cache.TileCache;
 import se.dykstrom.jppf.mandel.model.Coordinates;
+import se.dykstrom.jppf.mandel.pan.PanEvent;
 import se.dykstrom.jppf.mandel.rubberband.RubberBandSelectionEvent;
+import se.dykstrom.jppf.mandel.task.IterationProbe;
 import se.dykstrom.jppf.mandel.task.Parameters;
-import se.dykstrom.jppf.mandel.task.TaskSpawner;
+import se.dykstrom.jppf.mandel.task.RealAxisMirror;
+import se.dykstrom.jppf.mandel.task.ReferenceOrbit;
+import se.dykstrom.jppf.mandel.task.RenderBackend;
+import se.dykstrom.jppf.mandel.task.RenderMode;
+import se.dykstrom.jppf.mandel.task.TilePartitioner;
 import se.dykstrom.jppf.mandel.model.ImageAttributes;
 import se.dykstrom.jppf.mandel.model.Line;
 import se.dykstrom.jppf.mandel.view.MandelView;
+import se.dykstrom.jppf.mandel.view.Palette;
 
 import javax.swing.*;
 import java.awt.*;
@@ -36,37 +44,97 @@ import java.awt.event.WindowEvent;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Stack;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+import static java.util.stream.Collectors.toList;
 import static javax.swing.JOptionPane.ERROR_MESSAGE;
 import static javax.swing.JOptionPane.showMessageDialog;
 import static se.dykstrom.jppf.mandel.model.Coordinates.INITIAL_COORDINATES;
 
 public class MandelController {
 
-    private static final int TASKS_PER_JOB = 4;
+    /** The maximum number of chunks of lines waiting to be drawn, before the calculation is blocked. */
+    private static final int MAX_BUFFERED_CHUNKS = 16;
+
+    /**
+     * The strides of the passes used in progressive rendering, from coarse to fine. Each pass
+     * calculates only the pixels that were not calculated by the previous passes.
+     */
+    private static final int[] PASS_STRIDES = {8, 4, 2, 1};
+
+    /** The delay between two steps when cycling the colors, in milliseconds. */
+    private static final int COLOR_CYCLE_DELAY = 40;
+
+    /** The number of palette colors to rotate the colors in each step when cycling the colors. */
+    private static final int COLOR_CYCLE_STEP = 4;
+
+    /**
+     * The minimum number of tasks per processing thread in the backend. If an image is divided
+     * into fewer tiles than this, the tile size is reduced, to keep all threads busy.
+     */
+    private static final int TASKS_PER_THREAD = 4;
+
+    /** The tile size is never reduced below this size in pixels. */
+    private static final int MIN_TILE_SIZE = 16;
+
+    /** The maximum size of the uncompressed tiles in the tile cache. */
+    private static final long CACHE_SIZE = 64L * 1024 * 1024;
+
+    /** The maximum size of the compressed tiles in the tile cache. */
+    private static final long COMPRESSED_CACHE_SIZE = 64L * 1024 * 1024;
 
     private final Logger logger = LoggerFactory.getLogger(MandelController.class);
 
     private final MandelView view;
-    private final int numberOfJobs;
+    private final RenderBackend backend;
+    private final int maxTileSize;
+
+    /** The partitioner used for the current image, see {@link #selectPartitioner}. */
+    private volatile TilePartitioner partitioner;
 
     private final ExecutorService executorService = Executors.newSingleThreadExecutor();
-    private final TaskSpawner spawner = new TaskSpawner();
+    private final TileCache cache = new TileCache(CACHE_SIZE, COMPRESSED_CACHE_SIZE).register();
+
+    /** The generation of the current image, incremented for each new image. */
+    private final AtomicInteger generation = new AtomicInteger(0);
+
+    /** The generation of the last image that was completely drawn. */
+    private final AtomicInteger completedGeneration = new AtomicInteger(-1);
+
+    /** Rotates the colors of the image when cycling the colors. */
+    private final Timer colorCycleTimer = new Timer(COLOR_CYCLE_DELAY, event -> cycleColorsStep());
+
+    /** The current rotation of the palette colors. */
+    private int colorOffset;
 
     /** Stack used to store undo objects, that is, {@code ImageAttributes} objects. */
     private final Stack<ImageAttributes> undoStack = new Stack<>();
 
-    public MandelController(MandelView view, int numberOfJobs) {
+    public MandelController(MandelView view, RenderBackend backend, int tileSize) {
         this.view = view;
-        this.numberOfJobs = numberOfJobs;
+        this.backend = backend;
+        this.maxTileSize = tileSize;
+        this.partitioner = new TilePartitioner(tileSize);
         undoStack.push(ImageAttributes.INITIAL_ATTRIBUTES);
 
         view.getNewMenuItem().addActionListener(event -> newAction());
         view.getExitMenuItem().addActionListener(event -> exitAction());
         view.getUndoMenuItem().addActionListener(event -> undoAction());
         view.getRubberBandSelector().addRubberBandListener(this::rubberBandAction);
+        view.getPanTracker().addPanListener(this::panAction);
+        for (Palette palette : Palette.values()) {
+            view.getPaletteMenuItem(palette).addActionListener(event -> colorAction());
+        }
+        view.getSmoothColorsMenuItem().addActionListener(event -> colorAction());
+        view.getCycleColorsMenuItem().addActionListener(event -> cycleColorsAction());
         view.addComponentListener(new ComponentAdapter() {
             @Override
             public void componentResized(ComponentEvent e) {
@@ -95,27 +163,60 @@ public class MandelController {
             scale = Coordinates.INITIAL_SIZE / size.getWidth();
             bounds = new Rectangle(0, 0, (int) size.getWidth(), (int) size.getWidth());
         }
-        Coordinates coordinates = centerImage(size, bounds, scale, INITIAL_COORDINATES.getMinX(), INITIAL_COORDINATES.getMinY());
-        undoStack.push(createImage(new ImageAttributes(coordinates, scale)));
+        Coordinates coordinates = centerImage(size, bounds, scale, INITIAL_COORDINATES);
+        undoStack.push(createImage(new ImageAttributes(coordinates, scale), true));
     }
 
     private void exitAction() {
+        generation.incrementAndGet();
+        colorCycleTimer.stop();
+        backend.cancel();
         executorService.shutdown();
-        spawner.close();
+        backend.close();
         System.exit(0);
     }
 
+    /**
+     * Recolors the current image using the colors selected in the view. The escape times of
+     * the image are kept in the view, so no calculation is needed.
+     */
+    private void colorAction() {
+        view.setColors(view.getSelectedPalette(), colorOffset, view.getSmoothColorsMenuItem().isSelected());
+    }
+
+    private void cycleColorsAction() {
+        if (view.getCycleColorsMenuItem().isSelected()) {
+            colorCycleTimer.start();
+        } else {
+            colorCycleTimer.stop();
+        }
+    }
+
+    private void cycleColorsStep() {
+        colorOffset += COLOR_CYCLE_STEP;
+        colorAction();
+    }
+
     private void undoAction() {
         if (undoStack.size() > 1) {
             // Throw away the top item, since that was used to create the current image
             undoStack.pop();
 
             // Use next item to create a new image, identical to the previous image
-            createImage(undoStack.peek());
+            recreateImage();
         }
     }
 
-    private final Debouncer debouncer = new Debouncer(() -> createImage(undoStack.peek()));
+    private final Debouncer debouncer = new Debouncer(() -> SwingUtilities.invokeLater(this::recreateImage));
+
+    /**
+     * Creates the image defined by the top item of the undo stack again, and replaces the top item
+     * with the image attributes actually used to draw the image. The image may be aligned with the
+     * real axis differently than before, for example if the image size has changed.
+     */
+    private void recreateImage() {
+        undoStack.push(createImage(undoStack.pop()));
+    }
 
     private void resizeAction() {
         debouncer.run();
@@ -129,12 +230,84 @@ public class MandelController {
         Coordinates coordinates = imageAttributes.getCoordinates();
         final double scale = imageAttributes.getScale();
 
-        final double newMinX = coordinates.getMinX() + bounds.getX() * scale;
-        final double newMinY = coordinates.getMinY() + bounds.getY() * scale;
         final double newScale = calculateNewScale(view.getImageSize(), bounds, scale);
-        final Coordinates newCoordinates = centerImage(view.getImageSize(), bounds, newScale, newMinX, newMinY);
+        if (newScale < ImageAttributes.MIN_SCALE) {
+            logger.info("Cannot zoom in to scale {}, the smallest scale supported is {}", newScale, ImageAttributes.MIN_SCALE);
+            return;
+        }
+        final Coordinates newMinCoordinates = coordinates.translate(bounds.getX() * scale, bounds.getY() * scale, newScale);
+        final Coordinates newCoordinates = centerImage(view.getImageSize(), bounds, newScale, newMinCoordinates);
+
+        undoStack.push(createImage(new ImageAttributes(newCoordinates, newScale), true));
+    }
+
+    /**
+     * Moves the image the distance dragged. If the current image is complete, its pixels are
+     * moved in place, and only the parts of the image exposed by the move are calculated.
+     * The maximum number of iterations is kept, so the moved pixels remain valid.
+     */
+    private void panAction(PanEvent event) {
+        final int dx = event.getDx();
+        final int dy = event.getDy();
+        if (dx == 0 && dy == 0) {
+            return;
+        }
+
+        ImageAttributes imageAttributes = undoStack.peek();
+        Coordinates coordinates = imageAttributes.getCoordinates();
+        final double scale = imageAttributes.getScale();
+        final Coordinates newCoordinates = coordinates.translate(-dx * scale, -dy * scale, scale);
+        final ImageAttributes newImageAttributes = imageAttributes.withCoordinates(newCoordinates);
+
+        Dimension imageSize = view.getImageSize();
+        int width = (int) imageSize.getWidth();
+        int height = (int) imageSize.getHeight();
+        boolean complete = completedGeneration.get() == generation.get() && imageSize.equals(view.getRasterSize());
+        if (!complete || Math.abs(dx) >= width || Math.abs(dy) >= height) {
+            logger.debug("Panning by ({}, {}), calculating the whole image", dx, dy);
+            undoStack.push(createImage(newImageAttributes));
+            return;
+        }
+
+        RealAxisMirror mirror = selectMirror(newImageAttributes);
+        List<Parameters> parametersList = exposedTiles(width, height, dx, dy, newImageAttributes, mirror);
+        logger.debug("Panning by ({}, {}), calculating {} of {} pixels", dx, dy,
+                (long) width * height - (long) (width - Math.abs(dx)) * (height - Math.abs(dy)), (long) width * height);
+        view.shiftImage(dx, dy);
+        undoStack.push(renderImage(newImageAttributes, parametersList, mirror, false, () -> { }));
+    }
+
+    /**
+     * Returns the tiles that cover the parts of the image exposed when moving the image
+     * the given distance: a horizontal strip of full width, and a vertical strip that
+     * covers the remaining rows.
+     */
+    private List<Parameters> exposedTiles(int width, int height, int dx, int dy, ImageAttributes imageAttributes, RealAxisMirror mirror) {
+        List<Parameters> parametersList = new ArrayList<>();
+        int remainingY = 0;
+        int remainingHeight = height;
+        if (dy != 0) {
+            int stripY = dy > 0 ? 0 : height + dy;
+            parametersList.addAll(partition(0, stripY, width, Math.abs(dy), imageAttributes, mirror));
+            remainingY = dy > 0 ? dy : 0;
+            remainingHeight = height - Math.abs(dy);
+        }
+        if (dx != 0) {
+            int stripX = dx > 0 ? 0 : width + dx;
+            parametersList.addAll(partition(stripX, remainingY, Math.abs(dx), remainingHeight, imageAttributes, mirror));
+        }
+        return parametersList;
+    }
 
-        undoStack.push(createImage(new ImageAttributes(newCoordinates, newScale)));
+    /**
+     * Returns the given image attributes with a maximum number of iterations estimated by a low
+     * resolution probe. The probe calculates about a thousand points with a raised iteration cap,
+     * which may take a while, so this method should not be called on the event dispatch thread.
+     */
+    private ImageAttributes withProbedIterations(ImageAttributes imageAttributes, Dimension imageSize) {
+        int maxIterations = IterationProbe.probe(imageAttributes, (int) imageSize.getWidth(), (int) imageSize.getHeight());
+        logger.debug("Probed max iterations = {}, scale based max iterations = {}", maxIterations, imageAttributes.getMaxIterations());
+        return imageAttributes.withMaxIterations(maxIterations);
     }
 
     /**
@@ -144,11 +317,10 @@ public class MandelController {
      * @param size The size of the image in pixels.
      * @param bounds The bounds of the selected area in pixels.
      * @param scale The new scale after zooming in.
-     * @param minX The new min X after zooming in.
-     * @param minY The new min Y after zooming in.
+     * @param coordinates The new coordinates after zooming in.
      * @return The coordinates for a centered image.
      */
-    private Coordinates centerImage(Dimension size, Rectangle bounds, double scale, double minX, double minY) {
+    private Coordinates centerImage(Dimension size, Rectangle bounds, double scale, Coordinates coordinates) {
         final double x1 = size.getWidth();
         final double x2 = bounds.getWidth();
         final double y1 = size.getHeight();
@@ -158,12 +330,12 @@ public class MandelController {
             // Calculate the width of the selected area after zooming in
             double x3 = y1 / y2 * x2;
             double pixelsLeftOfArea = (x1 - x3) / 2;
-            return new Coordinates(minX - pixelsLeftOfArea * scale, minY);
+            return coordinates.translate(-pixelsLeftOfArea * scale, 0, scale);
         } else {
             // Calculate the height of the selected area after zooming in
             double y3 = x1 / x2 * y2;
             double pixelsAboveArea = (y1 - y3) / 2;
-            return new Coordinates(minX, minY - pixelsAboveArea * scale);
+            return coordinates.translate(0, -pixelsAboveArea * scale, scale);
         }
     }
 
@@ -189,20 +361,145 @@ public class MandelController {
     }
 
     /**
-     * Creates a new fractal image that fits the current size of the image panel.
+     * Creates a new fractal image that fits the current size of the image panel. Any image
+     * that is still being calculated is superseded by the new image: its jobs are cancelled,
+     * and any results that arrive late are discarded.
      *
      * @param imageAttributes The image attributes that defines the image to create.
      * @return The actual coordinates use the draw the image.
      */
     private ImageAttributes createImage(final ImageAttributes imageAttributes) {
+        return createImage(imageAttributes, false);
+    }
+
+    /**
+     * Creates a new fractal image defined by the given image attributes, see {@link #createImage(ImageAttributes)}.
+     * If {@code probe} is {@code true}, and probing is enabled, the maximum number of iterations is
+     * estimated by a low resolution probe on the render thread, before any tiles are calculated.
+     * The probed image attributes then replace the returned image attributes on the undo stack.
+     */
+    private ImageAttributes createImage(final ImageAttributes imageAttributes, boolean probe) {
         Dimension imageSize = view.getImageSize();
         int width = (int) imageSize.getWidth();
         int height = (int) imageSize.getHeight();
+        logger.info("Image size = {}x{}", width, height);
+        partitioner = selectPartitioner(width, height);
+        ImageAttributes alignedAttributes = view.getMirrorMenuItem().isSelected() ? RealAxisMirror.align(imageAttributes, height) : imageAttributes;
+        RealAxisMirror mirror = selectMirror(alignedAttributes);
+        List<Parameters> tiles = partition(0, 0, width, height, alignedAttributes, mirror);
+        boolean probeIterations = probe && view.getProbeMenuItem().isSelected();
+        return renderImage(alignedAttributes, tiles, mirror, probeIterations, () -> view.clearImage(width, height));
+    }
+
+    /**
+     * Returns a partitioner that divides an image of the given size into enough tiles to keep
+     * all processing threads in the backend busy. The tile size is halved until there are at
+     * least {@link #TASKS_PER_THREAD} tiles per thread, but is never larger than the configured
+     * tile size, or smaller than {@link #MIN_TILE_SIZE}. The parallelism of the backend is checked
+     * for each new image, so the tile size adapts when nodes join or leave the grid.
+     */
+    private TilePartitioner selectPartitioner(int width, int height) {
+        final int minimumTiles = TASKS_PER_THREAD * backend.getParallelism();
+        int tileSize = maxTileSize;
+        while (tileSize > MIN_TILE_SIZE && numberOfTiles(width, height, tileSize) < minimumTiles) {
+            tileSize = Math.max(MIN_TILE_SIZE, tileSize / 2);
+        }
+        if (tileSize == partitioner.getTileSize()) {
+            return partitioner;
+        }
+        logger.info("Tile size = {} for parallelism {}", tileSize, backend.getParallelism());
+        return new TilePartitioner(tileSize);
+    }
+
+    private static int numberOfTiles(int width, int height, int tileSize) {
+        return ((width + tileSize - 1) / tileSize) * ((height + tileSize - 1) / tileSize);
+    }
+
+    /**
+     * Returns a mirror that mirrors lines about the real axis in the given image, if mirroring
+     * is enabled, and the real axis is aligned with the lines of the image.
+     */
+    private RealAxisMirror selectMirror(ImageAttributes imageAttributes) {
+        return view.getMirrorMenuItem().isSelected() ? RealAxisMirror.forImage(imageAttributes) : RealAxisMirror.NONE;
+    }
+
+    /**
+     * Divides a rectangular area of the image into tiles, of equal estimated cost if task cost
+     * balancing is enabled, or of equal size if not. Lines that are mirror images of other lines
+     * in the area are excluded, see {@link RealAxisMirror#exclude}.
+     */
+    private List<Parameters> partition(int areaX, int areaY, int width, int height, ImageAttributes imageAttributes, RealAxisMirror mirror) {
+        Rectangle area = mirror.exclude(areaX, areaY, width, height);
+        if (view.getBalanceMenuItem().isSelected()) {
+            return partitioner.partitionByCost(area.x, area.y, area.width, area.height, imageAttributes);
+        }
+        return partitioner.partition(area.x, area.y, area.width, area.height, imageAttributes);
+    }
+
+    /**
+     * Calculates the given tiles of a new fractal image, and draws them in the current image,
+     * superseding any image that is still being calculated.
+     *
+     * @param imageAttributes The image attributes that defines the image to create.
+     * @param parametersList The tiles to calculate.
+     * @param mirror Adds the lines that are mirror images of calculated lines.
+     * @param probe True if the maximum number of iterations should be estimated by a probe.
+     * @param prepare Prepares the current image for drawing, called on the event dispatch thread.
+     * @return The actual coordinates use the draw the image.
+     */
+    private ImageAttributes renderImage(final ImageAttributes imageAttributes, List<Parameters> tiles, RealAxisMirror mirror, boolean probe, Runnable prepare) {
+        RenderMode renderMode = selectRenderMode(imageAttributes);
+        boolean progressive = view.getProgressiveMenuItem().isSelected() && renderMode != RenderMode.MARIANI_SILVER;
+        List<Parameters> parametersList = progressive ? withPasses(tiles) : tiles;
+        Dimension imageSize = view.getImageSize();
+
+        // Supersede any image that is still being calculated
+        final int imageGeneration = generation.incrementAndGet();
+        final BooleanSupplier isCurrent = () -> imageGeneration == generation.get();
+        backend.cancel();
 
         executorService.submit(() -> {
+            if (!isCurrent.getAsBoolean()) {
+                logger.debug("Skipping superseded image {}", imageAttributes);
+                return;
+            }
             try {
-                List<Line> lines = createLines(width, height, imageAttributes);
-                SwingUtilities.invokeLater(() -> view.drawImage(lines));
+                ImageAttributes renderAttributes = imageAttributes;
+                List<Parameters> renderList = parametersList;
+                if (probe) {
+                    final ImageAttributes probedAttributes = withProbedIterations(imageAttributes, imageSize);
+                    renderAttributes = probedAttributes;
+                    renderList = parametersList.stream()
+                            .map(parameters -> parameters.withImageAttributes(probedAttributes))
+                            .collect(toList());
+                    // Make the probed image attributes the current ones, before any lines are drawn
+                    SwingUtilities.invokeLater(() -> {
+                        if (isCurrent.getAsBoolean() && undoStack.peek() == imageAttributes) {
+                            undoStack.set(undoStack.size() - 1, probedAttributes);
+                        }
+                    });
+                }
+                LineSubscriber subscriber = new LineSubscriber(view, renderAttributes.getMaxIterations(), isCurrent);
+                SwingUtilities.invokeLater(() -> {
+                    if (isCurrent.getAsBoolean()) {
+                        prepare.run();
+                    }
+                });
+                if (renderMode == RenderMode.PERTURBATION) {
+                    renderList = withReferenceOrbit(renderList, renderAttributes, imageSize);
+                }
+                try (SubmissionPublisher<List<Line>> publisher = new SubmissionPublisher<>(ForkJoinPool.commonPool(), MAX_BUFFERED_CHUNKS)) {
+                    publisher.subscribe(subscriber);
+                    createLines(renderList, renderMode, lines -> {
+                        if (isCurrent.getAsBoolean()) {
+                            publisher.submit(mirror.withMirroredLines(lines));
+                        }
+                    });
+                }
+                subscriber.awaitCompletion();
+                completedGeneration.set(imageGeneration);
+            } catch (CancellationException e) {
+                logger.info("Cancelled superseded image {}", imageAttributes);
             } catch (Exception e) {
                 logger.error("Error calculating lines: " + e.getMessage(), e);
                 SwingUtilities.invokeLater(() -> showMessageDialog(view, "Error calculating lines:\n" + e.getMessage(), "Error", ERROR_MESSAGE));
@@ -213,38 +510,86 @@ public class MandelController {
     }
 
     /**
-     * Returns a list of lines to draw.
+     * Returns the render mode to use for the given image. Deep zoom images are always calculated
+     * using perturbation theory, since the other render modes lack the precision needed.
      */
-    private List<Line> createLines(int width, int height, ImageAttributes imageAttributes) throws Exception {
-        final int numberOfTasks = numberOfJobs * TASKS_PER_JOB;
-        final int linesPerTask = height / numberOfTasks;
-        logger.info("Number of lines = {}, number of jobs = {}, number of tasks = {}, tasks per job = {}, lines per task = {}",
-                height, numberOfJobs, numberOfTasks, TASKS_PER_JOB, linesPerTask);
+    private RenderMode selectRenderMode(ImageAttributes imageAttributes) {
+        if (imageAttributes.isDeepZoom()) {
+            return RenderMode.PERTURBATION;
+        }
+        return view.getMarianiSilverMenuItem().isSelected() ? RenderMode.MARIANI_SILVER : RenderMode.EXHAUSTIVE;
+    }
 
-        // Divide the coordinate space among the tasks
-        Coordinates coordinates = imageAttributes.getCoordinates();
-        double coordinatesPerTask = height * imageAttributes.getScale() / numberOfTasks;
+    /**
+     * Calculates the reference orbit of the image, and returns a list of parameters that
+     * refer to it. The reference orbit is calculated with arbitrary precision, which may
+     * take a while, so this method should not be called on the event dispatch thread.
+     */
+    private List<Parameters> withReferenceOrbit(List<Parameters> parametersList, ImageAttributes imageAttributes, Dimension imageSize) {
+        long start = System.nanoTime();
+        ReferenceOrbit referenceOrbit = ReferenceOrbit.forImage(imageAttributes, (int) imageSize.getWidth(), (int) imageSize.getHeight());
+        logger.info("Calculated reference orbit of length {} in {} ms", referenceOrbit.getLength(), (System.nanoTime() - start) / 1_000_000);
+        return parametersList.stream()
+                .map(parameters -> parameters.withReferenceOrbit(referenceOrbit))
+                .collect(toList());
+    }
 
+    /**
+     * Returns a list of parameters that calculates the given tiles in several passes, from
+     * coarse to fine. The list is ordered by pass, so that all tiles of a coarse pass are
+     * calculated before any tile of a finer pass. In total, each pixel is calculated once.
+     */
+    private static List<Parameters> withPasses(List<Parameters> tiles) {
         List<Parameters> parametersList = new ArrayList<>();
-
-        // Create parameters for all tasks
-        for (int s = 0; s < (numberOfTasks - 1); s++) {
-            double minY = coordinates.getMinY() + (coordinatesPerTask * s);
-            ImageAttributes taskAttributes = imageAttributes.withCoordinates(coordinates.withMinY(minY));
-            parametersList.add(new Parameters(linesPerTask * s, width, linesPerTask, taskAttributes));
+        for (int pass = 0; pass < PASS_STRIDES.length; pass++) {
+            for (Parameters parameters : tiles) {
+                parametersList.add(parameters.withStride(PASS_STRIDES[pass], pass > 0));
+            }
         }
+        return parametersList;
+    }
 
-        // Assign the rest of the lines to the last task
-        double minY = coordinates.getMinY() + (coordinatesPerTask * (numberOfTasks - 1));
-        ImageAttributes taskAttributes = imageAttributes.withCoordinates(coordinates.withMinY(minY));
-        int taskHeight = height - ((numberOfTasks - 1) * linesPerTask);
-        parametersList.add(new Parameters(linesPerTask * (numberOfTasks - 1), width, taskHeight, taskAttributes));
-
-        long start = System.nanoTime();
-        List<Line> lines = spawner.spawnTasks(parametersList, numberOfJobs);
-        long stop = System.nanoTime();
-        long durationInMillis = (stop - start) / 1_000_000;
-        logger.info("Calculated {} lines in {} ms", height, durationInMillis);
-        return lines;
+    /**
+     * Calculates all lines of the given tiles, and passes them to the given consumer in chunks,
+     * as soon as they have been calculated. Tiles found in the tile cache are passed to the
+     * consumer immediately, and only the remaining tiles are calculated on the grid.
+     */
+    private void createLines(List<Parameters> tiles, RenderMode renderMode, Consumer<List<Line>> consumer) throws Exception {
+        List<Parameters> parametersList = tiles.stream()
+                .map(parameters -> parameters.withRenderMode(renderMode))
+                .collect(toList());
+
+        // Draw the cached tiles directly, and calculate the rest
+        List<Parameters> missingList = new ArrayList<>();
+        for (Parameters parameters : parametersList) {
+            List<Line> lines = cache.get(parameters);
+            if (lines != null) {
+                consumer.accept(lines);
+            } else {
+                missingList.add(parameters);
+            }
+        }
+        logger.info("Backend = {}, number of tasks = {}, cached tiles = {}, tile size = {}, render mode = {}",
+                backend, missingList.size(), parametersList.size() - missingList.size(),
+                partitioner.getTileSize(), renderMode);
+
+        if (!missingList.isEmpty()) {
+            long start = System.nanoTime();
+            AtomicLong firstChunk = new AtomicLong();
+            backend.render(missingList, (parameters, lines) -> {
+                firstChunk.compareAndSet(0, System.nanoTime());
+                cache.put(parameters, lines);
+                consumer.accept(lines);
+            });
+            long stop = System.nanoTime();
+            long durationInMillis = (stop - start) / 1_000_000;
+            if (firstChunk.get() != 0) {
+                long firstChunkInMillis = (firstChunk.get() - start) / 1_000_000;
+                logger.info("Calculated {} tiles in {} ms, first chunk after {} ms", missingList.size(), durationInMillis, firstChunkInMillis);
+            } else {
+                logger.info("Calculated {} tiles in {} ms, no chunks delivered", missingList.size(), durationInMillis);
+            }
+        }
+        logger.info("Tile cache {}", cache);
     }
 }
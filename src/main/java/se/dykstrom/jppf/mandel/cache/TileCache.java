@@ -0,0 +1,264 @@
+/*
+ * Copyright (C) 2019 Johan Dykstrom
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package se.dykstrom.jppf.mandel.cache;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.dykstrom.jppf.mandel.model.Line;
+import se.dykstrom.jppf.mandel.task.Parameters;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A least-recently-used cache of calculated tiles, keyed by the parameters that define each tile:
+ * the coordinates and scale of the image, the position and size of the tile, the maximum number
+ * of iterations, and the render mode. A tile found in the cache can be drawn without sending
+ * a task to the grid.
+ * <p>
+ * The cache has two tiers, each bounded by a number of bytes. Tiles are stored uncompressed in
+ * the first tier. When a tile is evicted from the first tier, it is compressed and moved to the
+ * second tier, from where it is evicted for good. A tile found in the second tier is moved back
+ * to the first tier. Setting the size of the second tier to zero disables compression.
+ * <p>
+ * All methods are synchronized, and can be called from any thread.
+ *
+ * @author Johan Dykstrom
+ */
+public class TileCache implements TileCacheMBean {
+
+    /** The estimated size of a line in bytes, not counting the escape times. */
+    private static final int LINE_OVERHEAD = 48;
+
+    private final Logger logger = LoggerFactory.getLogger(TileCache.class);
+
+    private final long maxBytes;
+    private final long maxCompressedBytes;
+
+    private final LinkedHashMap<Parameters, List<Line>> tiles = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<Parameters, byte[]> compressedTiles = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long bytes;
+    private long compressedBytes;
+
+    private long hits;
+    private long compressedHits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Creates a new tile cache.
+     *
+     * @param maxBytes The maximum size of the uncompressed tier in bytes.
+     * @param maxCompressedBytes The maximum size of the compressed tier in bytes, or zero to disable compression.
+     */
+    public TileCache(long maxBytes, long maxCompressedBytes) {
+        if (maxBytes < 0 || maxCompressedBytes < 0) {
+            throw new IllegalArgumentException("Invalid cache size: " + maxBytes + ", " + maxCompressedBytes);
+        }
+        this.maxBytes = maxBytes;
+        this.maxCompressedBytes = maxCompressedBytes;
+    }
+
+    /**
+     * Registers this cache in the platform MBean server, to make the statistics available using JMX.
+     * Failing to register the cache is logged, but otherwise ignored.
+     */
+    public TileCache register() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName("se.dykstrom.jppf.mandel:type=TileCache"));
+        } catch (JMException e) {
+            logger.warn("Failed to register tile cache MBean: " + e.getMessage());
+        }
+        return this;
+    }
+
+    /**
+     * Returns the lines of the tile defined by the given parameters, or {@code null} if the tile
+     * is not in the cache.
+     */
+    public synchronized List<Line> get(Parameters parameters) {
+        List<Line> lines = tiles.get(parameters);
+        if (lines != null) {
+            hits++;
+            return lines;
+        }
+
+        byte[] compressed = compressedTiles.remove(parameters);
+        if (compressed != null) {
+            compressedBytes -= compressed.length;
+            lines = decompress(compressed);
+            if (lines != null) {
+                compressedHits++;
+                put(parameters, lines);
+                return lines;
+            }
+        }
+
+        misses++;
+        return null;
+    }
+
+    /**
+     * Adds the lines of the tile defined by the given parameters to the cache, evicting the
+     * least recently used tiles if needed.
+     */
+    public synchronized void put(Parameters parameters, List<Line> lines) {
+        final long size = sizeOf(lines);
+        if (size > maxBytes) {
+            return;
+        }
+        final List<Line> previous = tiles.put(parameters, lines);
+        if (previous != null) {
+            bytes -= sizeOf(previous);
+        }
+        bytes += size;
+
+        // Move the least recently used tiles to the compressed tier
+        final Iterator<Map.Entry<Parameters, List<Line>>> iterator = tiles.entrySet().iterator();
+        while (bytes > maxBytes && iterator.hasNext()) {
+            final Map.Entry<Parameters, List<Line>> entry = iterator.next();
+            iterator.remove();
+            bytes -= sizeOf(entry.getValue());
+            putCompressed(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void putCompressed(Parameters parameters, List<Line> lines) {
+        final byte[] compressed = maxCompressedBytes > 0 ? compress(lines) : null;
+        if (compressed == null || compressed.length > maxCompressedBytes) {
+            evictions++;
+            return;
+        }
+        compressedTiles.put(parameters, compressed);
+        compressedBytes += compressed.length;
+
+        final Iterator<byte[]> iterator = compressedTiles.values().iterator();
+        while (compressedBytes > maxCompressedBytes && iterator.hasNext()) {
+            compressedBytes -= iterator.next().length;
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    private static long sizeOf(List<Line> lines) {
+        long size = 0;
+        for (final Line line : lines) {
+            size += line.getDataSize() + LINE_OVERHEAD;
+        }
+        return size;
+    }
+
+    private byte[] compress(List<Line> lines) {
+        final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(new DeflaterOutputStream(buffer))) {
+            out.writeObject(lines);
+        } catch (IOException e) {
+            logger.warn("Failed to compress tile: " + e.getMessage());
+            return null;
+        }
+        return buffer.toByteArray();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Line> decompress(byte[] compressed) {
+        try (ObjectInputStream in = new ObjectInputStream(new InflaterInputStream(new ByteArrayInputStream(compressed)))) {
+            return (List<Line>) in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            logger.warn("Failed to decompress tile: " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    @Override
+    public synchronized long getCompressedHits() {
+        return compressedHits;
+    }
+
+    @Override
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    @Override
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized int getEntries() {
+        return tiles.size();
+    }
+
+    @Override
+    public synchronized int getCompressedEntries() {
+        return compressedTiles.size();
+    }
+
+    @Override
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public synchronized long getCompressedBytes() {
+        return compressedBytes;
+    }
+
+    @Override
+    public synchronized double getHitRatio() {
+        final long lookups = hits + compressedHits + misses;
+        return lookups == 0 ? 0.0 : (double) (hits + compressedHits) / lookups;
+    }
+
+    @Override
+    public synchronized void clear() {
+        tiles.clear();
+        compressedTiles.clear();
+        bytes = 0;
+        compressedBytes = 0;
+        hits = 0;
+        compressedHits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "[hits=" + hits + ", compressedHits=" + compressedHits + ", misses=" + misses +
+                ", evictions=" + evictions + ", entries=" + tiles.size() + ", bytes=" + bytes +
+                ", compressedEntries=" + compressedTiles.size() + ", compressedBytes=" + compressedBytes + "]";
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2019 Johan Dykstrom
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package se.dykstrom.jppf.mandel.cache;
+
+/**
+ * The management interface of {@link TileCache}, used to monitor the cache using JMX.
+ *
+ * @author Johan Dykstrom
+ */
+public interface TileCacheMBean {
+
+    /** Returns the number of lookups that found the tile in the uncompressed tier. */
+    long getHits();
+
+    /** Returns the number of lookups that found the tile in the compressed tier. */
+    long getCompressedHits();
+
+    /** Returns the number of lookups that did not find the tile. */
+    long getMisses();
+
+    /** Returns the number of tiles evicted from the cache altogether. */
+    long getEvictions();
+
+    /** Returns the number of tiles in the uncompressed tier. */
+    int getEntries();
+
+    /** Returns the number of tiles in the compressed tier. */
+    int getCompressedEntries();
+
+    /** Returns the estimated size of the uncompressed tier in bytes. */
+    long getBytes();
+
+    /** Returns the size of the compressed tier in bytes. */
+    long getCompressedBytes();
+
+    /** Returns the ratio of lookups that found the tile in either tier. */
+    double getHitRatio();
+
+    /** Removes all tiles from the cache, and resets the statistics. */
+    void clear();
+}
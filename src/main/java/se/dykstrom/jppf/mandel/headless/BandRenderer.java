@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2019 Johan Dykstrom
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package se.dykstrom.jppf.mandel.headless;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.dykstrom.jppf.mandel.model.ImageAttributes;
+import se.dykstrom.jppf.mandel.model.Line;
+import se.dykstrom.jppf.mandel.task.Parameters;
+import se.dykstrom.jppf.mandel.task.ReferenceOrbit;
+import se.dykstrom.jppf.mandel.task.RenderBackend;
+import se.dykstrom.jppf.mandel.task.RenderMode;
+import se.dykstrom.jppf.mandel.task.TilePartitioner;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Renders an image of any size in horizontal bands, and writes each band to a {@link RowWriter}
+ * as soon as it is done. The next band is calculated while the current band is written, so at
+ * most two bands are kept in memory, regardless of the height of the image.
+ * <p>
+ * Deep zoom images are calculated using perturbation theory, with a reference orbit at the
+ * center of the image, that is shared by all bands.
+ *
+ * @author Johan Dykstrom
+ */
+public class BandRenderer {
+
+    private final Logger logger = LoggerFactory.getLogger(BandRenderer.class);
+
+    private final RenderBackend backend;
+    private final TilePartitioner partitioner;
+    private final int bandHeight;
+    private final RenderMode renderMode;
+
+    /**
+     * Creates a new band renderer.
+     *
+     * @param backend The backend used to calculate the tiles of each band.
+     * @param tileSize The width and height of the tiles each band is divided into.
+     * @param bandHeight The height of each band in pixels.
+     * @param renderMode The mode used to render the tiles, unless the image is a deep zoom image.
+     */
+    public BandRenderer(RenderBackend backend, int tileSize, int bandHeight, RenderMode renderMode) {
+        if (bandHeight <= 0) {
+            throw new IllegalArgumentException("Invalid band height: " + bandHeight);
+        }
+        this.backend = backend;
+        this.partitioner = new TilePartitioner(tileSize);
+        this.bandHeight = bandHeight;
+        this.renderMode = renderMode;
+    }
+
+    /**
+     * Renders the image defined by the given image attributes and size, and writes it row by row
+     * to the given writer. The writer is not closed.
+     */
+    public void render(ImageAttributes imageAttributes, int width, int height, RowWriter writer) throws Exception {
+        final ReferenceOrbit referenceOrbit = imageAttributes.isDeepZoom() ? ReferenceOrbit.forImage(imageAttributes, width, height) : null;
+        final ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            final long start = System.nanoTime();
+            Future<int[]> next = executorService.submit(() -> renderBand(imageAttributes, referenceOrbit, width, 0, Math.min(bandHeight, height)));
+            for (int bandY = 0; bandY < height; bandY += bandHeight) {
+                final int[] band = await(next);
+                final int currentHeight = Math.min(bandHeight, height - bandY);
+
+                // Calculate the next band while writing the current band
+                final int nextY = bandY + bandHeight;
+                if (nextY < height) {
+                    next = executorService.submit(() -> renderBand(imageAttributes, referenceOrbit, width, nextY, Math.min(bandHeight, height - nextY)));
+                }
+                writeBand(band, width, currentHeight, writer);
+
+                final int rows = bandY + currentHeight;
+                final long elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+                logger.info("Wrote {} of {} rows ({}%), {} rows/s", rows, height, 100L * rows / height, 1000L * rows / elapsedMillis);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Calculates one band of the image, and returns the escape times of the band, row by row.
+     * If a reference orbit is given, the band is calculated using perturbation theory.
+     */
+    private int[] renderBand(ImageAttributes imageAttributes, ReferenceOrbit referenceOrbit, int width, int bandY, int height) throws Exception {
+        final int[] band = new int[width * height];
+        final List<Parameters> parametersList = partitioner.partition(0, bandY, width, height, imageAttributes).stream()
+                .map(parameters -> (referenceOrbit != null)
+                        ? parameters.withRenderMode(RenderMode.PERTURBATION).withReferenceOrbit(referenceOrbit)
+                        : parameters.withRenderMode(renderMode))
+                .collect(toList());
+        backend.render(parametersList, (parameters, lines) -> {
+            synchronized (band) {
+                for (Line line : lines) {
+                    final int[] iterations = line.getIterations();
+                    System.arraycopy(iterations, 0, band, (line.getY() - bandY) * width + line.getX(), iterations.length);
+                }
+            }
+        });
+        synchronized (band) {
+            return band;
+        }
+    }
+
+    private static void writeBand(int[] band, int width, int height, RowWriter writer) throws IOException {
+        for (int y = 0; y < height; y++) {
+            writer.writeRow(band, y * width);
+        }
+    }
+
+    private static int[] await(Future<int[]> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+        }
+    }
+}
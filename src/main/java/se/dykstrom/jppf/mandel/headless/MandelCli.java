@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2019 Johan Dykstrom
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package se.dykstrom.jppf.mandel.headless;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.dykstrom.jppf.mandel.model.Coordinates;
+import se.dykstrom.jppf.mandel.model.ImageAttributes;
+import se.dykstrom.jppf.mandel.task.RenderBackend;
+import se.dykstrom.jppf.mandel.task.RenderBackends;
+import se.dykstrom.jppf.mandel.task.RenderMode;
+import se.dykstrom.jppf.mandel.task.TaskSpawner;
+import se.dykstrom.jppf.mandel.task.TilePartitioner;
+
+import java.math.BigDecimal;
+
+/**
+ * Renders a single image without a user interface, and writes it to a PNG or raw file.
+ * Any image size can be rendered, since the image is written band by band as it is calculated.
+ * <p>
+ * Options are given as {@code --name=value}:
+ * <ul>
+ *     <li>width, height - the size of the image in pixels (required)</li>
+ *     <li>output - the file to write, raw escape times if it ends with ".raw", otherwise PNG (required)</li>
+ *     <li>center-x, center-y - the center of the image (default -0.5, 0.0)</li>
+ *     <li>size - the width of the image in the complex plane (default 3.0)</li>
+ *     <li>iterations - the maximum number of iterations (default based on the scale)</li>
+ *     <li>mode - the render mode, exhaustive or mariani_silver (default exhaustive), deep zoom
+ *     images are always calculated using perturbation theory</li>
+ *     <li>jobs - the number of concurrent jobs per band (default 0, one job per node)</li>
+ *     <li>tile - the width and height of the tiles (default 64)</li>
+ *     <li>band - the height of the bands in pixels (default 256)</li>
+ * </ul>
+ *
+ * @author Johan Dykstrom
+ */
+public class MandelCli {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MandelCli.class);
+
+    private static final int DEFAULT_BAND_HEIGHT = 256;
+
+    public static void main(String[] args) {
+        int status = 0;
+        try {
+            run(new Options(args));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: MandelCli --width=<pixels> --height=<pixels> --output=<file> [--center-x=<x>] [--center-y=<y>]");
+            System.err.println("       [--size=<size>] [--iterations=<max>] [--mode=<mode>] [--jobs=<jobs>] [--tile=<pixels>] [--band=<pixels>]");
+            status = 1;
+        } catch (Exception e) {
+            LOGGER.error("Error rendering image: " + e.getMessage(), e);
+            status = 1;
+        }
+        // The JPPF client may have started threads that prevent the JVM from exiting
+        System.exit(status);
+    }
+
+    private static void run(Options options) throws Exception {
+        final int width = options.getInt("width");
+        final int height = options.getInt("height");
+        final String output = options.get("output");
+        final BigDecimal centerX = options.getDecimal("center-x", "-0.5");
+        final BigDecimal centerY = options.getDecimal("center-y", "0.0");
+        final double size = options.getDouble("size", Coordinates.INITIAL_SIZE);
+        final int iterations = options.getMaxIterations();
+        final RenderMode renderMode = options.getRenderMode();
+        final int numberOfJobs = options.getInt("jobs", TaskSpawner.AUTOMATIC_JOBS);
+        final int tileSize = options.getInt("tile", TilePartitioner.DEFAULT_TILE_SIZE);
+        final int bandHeight = options.getInt("band", DEFAULT_BAND_HEIGHT);
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid image size: " + width + "x" + height);
+        }
+
+        final double scale = size / width;
+        final Coordinates coordinates = new Coordinates(centerX, centerY).translate(-width / 2.0 * scale, -height / 2.0 * scale, scale);
+        ImageAttributes imageAttributes = new ImageAttributes(coordinates, scale);
+        if (iterations > 0) {
+            imageAttributes = imageAttributes.withMaxIterations(iterations);
+        }
+        final int maxIterations = imageAttributes.getMaxIterations();
+        LOGGER.info("Rendering {}x{} image {} to {}", width, height, imageAttributes, output);
+
+        try (RenderBackend backend = RenderBackends.createBackend(numberOfJobs);
+             RowWriter writer = output.endsWith(".raw")
+                     ? new RawRowWriter(output, width, maxIterations)
+                     : new PngRowWriter(output, width, height, maxIterations)) {
+            final long start = System.nanoTime();
+            new BandRenderer(backend, tileSize, bandHeight, renderMode).render(imageAttributes, width, height, writer);
+            LOGGER.info("Rendered {}x{} image in {} ms", width, height, (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+}
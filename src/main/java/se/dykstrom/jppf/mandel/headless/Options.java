@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2019 Johan Dykstrom
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package se.dykstrom.jppf.mandel.headless;
+
+import se.dykstrom.jppf.mandel.model.ImageAttributes;
+import se.dykstrom.jppf.mandel.task.RenderMode;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Command line options given as {@code --name=value}.
+ *
+ * @author Johan Dykstrom
+ */
+class Options {
+
+    private final Map<String, String> options = new HashMap<>();
+
+    /**
+     * Parses the given command line arguments.
+     *
+     * @throws IllegalArgumentException If an argument is not an option.
+     */
+    Options(String[] args) {
+        for (final String arg : args) {
+            final int index = arg.indexOf('=');
+            if (!arg.startsWith("--") || index < 0) {
+                throw new IllegalArgumentException("Invalid option: " + arg);
+            }
+            options.put(arg.substring(2, index), arg.substring(index + 1));
+        }
+    }
+
+    boolean contains(String name) {
+        return options.containsKey(name);
+    }
+
+    /**
+     * Returns the value of the given option, or the default value if the option was not given.
+     */
+    String get(String name, String defaultValue) {
+        return options.getOrDefault(name, defaultValue);
+    }
+
+    /**
+     * Returns the value of the given required option.
+     *
+     * @throws IllegalArgumentException If the option was not given.
+     */
+    String get(String name) {
+        final String value = options.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing option: --" + name);
+        }
+        return value;
+    }
+
+    int getInt(String name) {
+        return Integer.parseInt(get(name));
+    }
+
+    int getInt(String name, int defaultValue) {
+        return contains(name) ? getInt(name) : defaultValue;
+    }
+
+    double getDouble(String name, double defaultValue) {
+        return contains(name) ? Double.parseDouble(get(name)) : defaultValue;
+    }
+
+    /**
+     * Returns the value of the given option as a decimal number, keeping all digits given,
+     * which is needed for coordinates in deep zoom images.
+     */
+    BigDecimal getDecimal(String name, String defaultValue) {
+        return new BigDecimal(get(name, defaultValue));
+    }
+
+    /**
+     * Returns the maximum number of iterations given by the option "iterations", or zero if the
+     * option was not given, to use a limit based on the scale.
+     *
+     * @throws IllegalArgumentException If the value is outside the range supported by {@link ImageAttributes}.
+     */
+    int getMaxIterations() {
+        if (!contains("iterations")) {
+            return 0;
+        }
+        final int maxIterations = getInt("iterations");
+        if (maxIterations < ImageAttributes.MIN_ITERATIONS || maxIterations > ImageAttributes.MAX_ITERATIONS) {
+            throw new IllegalArgumentException("Invalid number of iterations: " + maxIterations + ", must be between "
+                    + ImageAttributes.MIN_ITERATIONS + " and " + ImageAttributes.MAX_ITERATIONS);
+        }
+        return maxIterations;
+    }
+
+    /**
+     * Returns the render mode given by the option "mode", exhaustive or mariani_silver. Render mode
+     * perturbation cannot be selected, since it is used automatically for deep zoom images.
+     *
+     * @throws IllegalArgumentException If the value is not a render mode that can be selected.
+     */
+    RenderMode getRenderMode() {
+        final String mode = get("mode", "exhaustive");
+        if (mode.equalsIgnoreCase(RenderMode.EXHAUSTIVE.name())) {
+            return RenderMode.EXHAUSTIVE;
+        } else if (mode.equalsIgnoreCase(RenderMode.MARIANI_SILVER.name())) {
+            return RenderMode.MARIANI_SILVER;
+        }
+        throw new IllegalArgumentException("Invalid render mode: " + mode + ", must be exhaustive or mariani_silver");
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2019 Johan Dykstrom
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package se.dykstrom.jppf.mandel.headless;
+
+import se.dykstrom.jppf.mandel.view.ColorMap;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Writes an RGB PNG image row by row. The rows are compressed and written to the file as they
+ * arrive, in IDAT chunks of bounded size, so only the current row is kept in memory. The escape
+ * times are converted to colors using a table created by the {@link ColorMap}.
+ *
+ * @author Johan Dykstrom
+ */
+public class PngRowWriter implements RowWriter {
+
+    private static final byte[] SIGNATURE = {(byte) 137, 80, 78, 71, 13, 10, 26, 10};
+
+    /** The maximum size of an IDAT chunk. */
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    /** The "Sub" filter, that stores each byte as the difference to the byte to the left. */
+    private static final int FILTER_SUB = 1;
+
+    private static final int BYTES_PER_PIXEL = 3;
+
+    private final DataOutputStream out;
+    private final DeflaterOutputStream idat;
+    private final Deflater deflater = new Deflater();
+    private final int width;
+    private final byte[] row;
+
+    /** The color of each escape time, see {@link ColorMap#createTable(int)}. */
+    private final int[] colorTable;
+
+    /**
+     * Creates a new writer, and writes the PNG header to the given file.
+     *
+     * @param file The name of the file to write.
+     * @param width The width of the image in pixels.
+     * @param height The height of the image in pixels.
+     * @param maxIterations The maximum number of iterations used to calculate the escape times.
+     */
+    public PngRowWriter(String file, int width, int height, int maxIterations) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        this.width = width;
+        this.colorTable = ColorMap.createTable(maxIterations);
+        this.row = new byte[1 + width * BYTES_PER_PIXEL];
+
+        out.write(SIGNATURE);
+        final byte[] header = new byte[13];
+        writeInt(header, 0, width);
+        writeInt(header, 4, height);
+        header[8] = 8; // Bit depth
+        header[9] = 2; // Color type RGB
+        writeChunk("IHDR", header, header.length);
+        this.idat = new DeflaterOutputStream(new ChunkOutputStream(), deflater, CHUNK_SIZE);
+    }
+
+    @Override
+    public void writeRow(int[] iterations, int offset) throws IOException {
+        row[0] = FILTER_SUB;
+        int previousR = 0, previousG = 0, previousB = 0;
+        for (int x = 0, i = 1; x < width; x++) {
+            final int rgb = colorTable[iterations[offset + x]];
+            final int r = (rgb >> 16) & 0xFF;
+            final int g = (rgb >> 8) & 0xFF;
+            final int b = rgb & 0xFF;
+            row[i++] = (byte) (r - previousR);
+            row[i++] = (byte) (g - previousG);
+            row[i++] = (byte) (b - previousB);
+            previousR = r;
+            previousG = g;
+            previousB = b;
+        }
+        idat.write(row);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            idat.finish();
+            idat.flush();
+            writeChunk("IEND", new byte[0], 0);
+        } finally {
+            deflater.end();
+            out.close();
+        }
+    }
+
+    private void writeChunk(String type, byte[] data, int length) throws IOException {
+        final byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        final CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data, 0, length);
+        out.writeInt(length);
+        out.write(typeBytes);
+        out.write(data, 0, length);
+        out.writeInt((int) crc.getValue());
+    }
+
+    private static void writeInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+
+    /**
+     * An output stream that writes the compressed image data to the file in IDAT chunks.
+     */
+    private class ChunkOutputStream extends OutputStream {
+
+        private final byte[] buffer = new byte[CHUNK_SIZE];
+        private int count;
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buffer.length) {
+                flush();
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            while (length > 0) {
+                if (count == buffer.length) {
+                    flush();
+                }
+                final int n = Math.min(length, buffer.length - count);
+                System.arraycopy(bytes, offset, buffer, count, n);
+                count += n;
+                offset += n;
+                length -= n;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (count > 0) {
+                writeChunk("IDAT", buffer, count);
+                count = 0;
+            }
+        }
+    }
+}
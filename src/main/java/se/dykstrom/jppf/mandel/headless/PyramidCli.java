@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2019 Johan Dykstrom
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package se.dykstrom.jppf.mandel.headless;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.dykstrom.jppf.mandel.model.Coordinates;
+import se.dykstrom.jppf.mandel.task.RenderBackend;
+import se.dykstrom.jppf.mandel.task.RenderBackends;
+import se.dykstrom.jppf.mandel.task.RenderMode;
+import se.dykstrom.jppf.mandel.task.TaskSpawner;
+
+import java.math.BigDecimal;
+import java.nio.file.Paths;
+
+/**
+ * Exports a region of the Mandelbrot set as a tile pyramid, that can be explored using a deep
+ * zoom or web map viewer. See {@link PyramidExporter}.
+ * <p>
+ * Options are given as {@code --name=value}:
+ * <ul>
+ *     <li>output - the directory to write the tiles to (required)</li>
+ *     <li>levels - the number of zoom levels, where the first level is a single tile (required)</li>
+ *     <li>layout - the directory layout, xyz or dzi (default xyz)</li>
+ *     <li>center-x, center-y - the center of the region (default -0.5, 0.0)</li>
+ *     <li>size - the width and height of the region in the complex plane (default 3.0)</li>
+ *     <li>iterations - the maximum number of iterations (default based on the scale of each level)</li>
+ *     <li>mode - the render mode, exhaustive or mariani_silver (default exhaustive), deep zoom
+ *     levels are always calculated using perturbation theory</li>
+ *     <li>jobs - the number of concurrent jobs (default 0, one job per node)</li>
+ *     <li>tile - the width and height of the tiles (default 256)</li>
+ * </ul>
+ *
+ * @author Johan Dykstrom
+ */
+public class PyramidCli {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PyramidCli.class);
+
+    private static final int DEFAULT_TILE_SIZE = 256;
+
+    public static void main(String[] args) {
+        int status = 0;
+        try {
+            run(new Options(args));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: PyramidCli --output=<directory> --levels=<levels> [--layout=<xyz|dzi>] [--center-x=<x>] [--center-y=<y>]");
+            System.err.println("       [--size=<size>] [--iterations=<max>] [--mode=<mode>] [--jobs=<jobs>] [--tile=<pixels>]");
+            status = 1;
+        } catch (Exception e) {
+            LOGGER.error("Error exporting pyramid: " + e.getMessage(), e);
+            status = 1;
+        }
+        // The JPPF client may have started threads that prevent the JVM from exiting
+        System.exit(status);
+    }
+
+    private static void run(Options options) throws Exception {
+        final String output = options.get("output");
+        final int zoomLevels = options.getInt("levels");
+        final PyramidLayout layout = PyramidLayout.valueOf(options.get("layout", "xyz").toUpperCase());
+        final BigDecimal centerX = options.getDecimal("center-x", "-0.5");
+        final BigDecimal centerY = options.getDecimal("center-y", "0.0");
+        final double size = options.getDouble("size", Coordinates.INITIAL_SIZE);
+        final int maxIterations = options.getMaxIterations();
+        final RenderMode renderMode = options.getRenderMode();
+        final int numberOfJobs = options.getInt("jobs", TaskSpawner.AUTOMATIC_JOBS);
+        final int tileSize = options.getInt("tile", DEFAULT_TILE_SIZE);
+        if (zoomLevels <= 0 || tileSize <= 0) {
+            throw new IllegalArgumentException("Invalid number of levels or tile size: " + zoomLevels + ", " + tileSize);
+        }
+
+        LOGGER.info("Exporting {} zoom levels of {}x{} tiles in {} layout to {}", zoomLevels, tileSize, tileSize, layout, output);
+        try (RenderBackend backend = RenderBackends.createBackend(numberOfJobs)) {
+            new PyramidExporter(backend, layout, Paths.get(output), tileSize, renderMode)
+                    .export(centerX, centerY, size, zoomLevels, maxIterations);
+        }
+    }
+}
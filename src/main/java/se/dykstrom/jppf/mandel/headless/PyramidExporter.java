@@ -0,0 +1,207 @@
+/*
+ * Copyright (C) 2019 Johan Dykstrom
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package se.dykstrom.jppf.mandel.headless;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.dykstrom.jppf.mandel.model.Coordinates;
+import se.dykstrom.jppf.mandel.model.ImageAttributes;
+import se.dykstrom.jppf.mandel.model.Line;
+import se.dykstrom.jppf.mandel.task.Parameters;
+import se.dykstrom.jppf.mandel.task.ReferenceOrbit;
+import se.dykstrom.jppf.mandel.task.RenderBackend;
+import se.dykstrom.jppf.mandel.task.RenderMode;
+import se.dykstrom.jppf.mandel.view.ColorMap;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Exports a square region of the complex plane as a pyramid of image tiles, one image per zoom
+ * level, in a directory layout defined by a {@link PyramidLayout}. Each tile is calculated by
+ * one task, and written to its file as soon as it has been calculated. Tiles that already exist
+ * are skipped, so an interrupted export can be resumed.
+ * <p>
+ * Deep zoom levels are calculated using perturbation theory, with a reference orbit at the
+ * center of the region, that is shared by all tiles of the level.
+ *
+ * @author Johan Dykstrom
+ */
+public class PyramidExporter {
+
+    /** The maximum number of tiles to render in one call to the backend. */
+    private static final int BATCH_SIZE = 256;
+
+    private final Logger logger = LoggerFactory.getLogger(PyramidExporter.class);
+
+    private final RenderBackend backend;
+    private final PyramidLayout layout;
+    private final Path directory;
+    private final int tileSize;
+    private final RenderMode renderMode;
+
+    /** Compresses and writes the tiles, while the backend calculates more tiles. */
+    private final ExecutorService writerService = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+
+    private long renderedTiles;
+    private long skippedTiles;
+
+    /**
+     * Creates a new pyramid exporter.
+     *
+     * @param backend The backend used to calculate the tiles.
+     * @param layout The directory layout.
+     * @param directory The directory to write the tiles to.
+     * @param tileSize The width and height of the tiles in pixels.
+     * @param renderMode The mode used to render the tiles, unless the level is a deep zoom level.
+     */
+    public PyramidExporter(RenderBackend backend, PyramidLayout layout, Path directory, int tileSize, RenderMode renderMode) {
+        this.backend = backend;
+        this.layout = layout;
+        this.directory = directory;
+        this.tileSize = tileSize;
+        this.renderMode = renderMode;
+    }
+
+    /**
+     * Exports the region with the given center and size.
+     *
+     * @param centerX The X coordinate of the center of the region.
+     * @param centerY The Y coordinate of the center of the region.
+     * @param size The width and height of the region.
+     * @param zoomLevels The number of zoom levels to export.
+     * @param maxIterations The maximum number of iterations, or zero to use a limit based on the scale of each level.
+     */
+    public void export(BigDecimal centerX, BigDecimal centerY, double size, int zoomLevels, int maxIterations) throws Exception {
+        final Coordinates center = new Coordinates(centerX, centerY);
+        final long start = System.nanoTime();
+        try {
+            layout.writeDescriptor(directory, zoomLevels, tileSize);
+            for (int level = 0; level < layout.getLevels(zoomLevels, tileSize); level++) {
+                final int imageSize = layout.getImageSize(level, tileSize);
+                final double scale = size / imageSize;
+                ImageAttributes imageAttributes = new ImageAttributes(center.translate(-size / 2, -size / 2, scale), scale);
+                if (maxIterations > 0) {
+                    imageAttributes = imageAttributes.withMaxIterations(maxIterations);
+                }
+                exportLevel(level, imageSize, imageAttributes);
+            }
+        } finally {
+            writerService.shutdown();
+        }
+        final double seconds = Math.max(1, (System.nanoTime() - start) / 1_000_000) / 1000.0;
+        logger.info("Exported pyramid in {} s: {} tiles rendered, {} tiles skipped, {} tiles/s",
+                seconds, renderedTiles, skippedTiles, String.format("%.1f", renderedTiles / seconds));
+    }
+
+    private void exportLevel(int level, int imageSize, ImageAttributes imageAttributes) throws Exception {
+        final long start = System.nanoTime();
+        final int tilesPerSide = (imageSize + tileSize - 1) / tileSize;
+        final ReferenceOrbit referenceOrbit = imageAttributes.isDeepZoom() ? ReferenceOrbit.forImage(imageAttributes, imageSize, imageSize) : null;
+        final int[] colorTable = ColorMap.createTable(imageAttributes.getMaxIterations());
+        long levelTiles = 0;
+
+        List<Parameters> batch = new ArrayList<>();
+        for (int row = 0; row < tilesPerSide; row++) {
+            for (int column = 0; column < tilesPerSide; column++) {
+                if (Files.exists(layout.getTilePath(directory, level, column, row))) {
+                    skippedTiles++;
+                    continue;
+                }
+                final int x = column * tileSize;
+                final int y = row * tileSize;
+                final Parameters parameters = new Parameters(x, y, Math.min(tileSize, imageSize - x), Math.min(tileSize, imageSize - y), imageAttributes, renderMode);
+                batch.add((referenceOrbit != null) ? parameters.withRenderMode(RenderMode.PERTURBATION).withReferenceOrbit(referenceOrbit) : parameters);
+                if (batch.size() == BATCH_SIZE) {
+                    levelTiles += exportBatch(level, batch, colorTable);
+                    batch = new ArrayList<>();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            levelTiles += exportBatch(level, batch, colorTable);
+        }
+        renderedTiles += levelTiles;
+
+        final double seconds = Math.max(1, (System.nanoTime() - start) / 1_000_000) / 1000.0;
+        logger.info("Level {}: {}x{} pixels, {} tiles rendered in {} s, {} tiles/s, max iterations = {}",
+                level, imageSize, imageSize, levelTiles, seconds, String.format("%.1f", levelTiles / seconds), imageAttributes.getMaxIterations());
+    }
+
+    /**
+     * Renders the given tiles, and writes them to their files. Returns the number of tiles written.
+     *
+     * @param level The zoom level of the tiles.
+     * @param batch The tiles to render.
+     * @param colorTable The color of each escape time, see {@link ColorMap#createTable(int)}.
+     */
+    private int exportBatch(int level, List<Parameters> batch, int[] colorTable) throws Exception {
+        final List<Future<?>> writes = new ArrayList<>();
+        backend.render(batch, (parameters, lines) -> {
+            synchronized (writes) {
+                writes.add(writerService.submit(() -> writeTile(level, parameters, lines, colorTable)));
+            }
+        });
+        synchronized (writes) {
+            for (Future<?> write : writes) {
+                try {
+                    write.get();
+                } catch (ExecutionException e) {
+                    throw (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+                }
+            }
+            return writes.size();
+        }
+    }
+
+    private void writeTile(int level, Parameters parameters, List<Line> lines, int[] colorTable) {
+        final BufferedImage image = new BufferedImage(parameters.getWidth(), parameters.getHeight(), BufferedImage.TYPE_INT_RGB);
+        final int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        for (Line line : lines) {
+            final int[] iterations = line.getIterations();
+            final int index = (line.getY() - parameters.getY()) * parameters.getWidth() + line.getX() - parameters.getX();
+            for (int i = 0; i < iterations.length; i++) {
+                pixels[index + i] = colorTable[iterations[i]];
+            }
+        }
+
+        final Path path = layout.getTilePath(directory, level, parameters.getX() / tileSize, parameters.getY() / tileSize);
+        try {
+            // Write to a temporary file first, so a tile that exists is always complete
+            Files.createDirectories(path.getParent());
+            final Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+            ImageIO.write(image, "png", temporary.toFile());
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write tile " + path, e);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2019 Johan Dykstrom
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package se.dykstrom.jppf.mandel.headless;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The directory layouts supported by the {@link PyramidExporter}. Each level of the pyramid is
+ * a square image, divided into square tiles. The layouts differ in the size of the level images,
+ * and in where the tiles are stored.
+ *
+ * @author Johan Dykstrom
+ */
+public enum PyramidLayout {
+
+    /**
+     * The XYZ layout used by web map libraries. Zoom level z is an image of 2^z by 2^z tiles,
+     * and each tile is stored in "z/x/y.png".
+     */
+    XYZ {
+        @Override
+        public int getLevels(int zoomLevels, int tileSize) {
+            return zoomLevels;
+        }
+
+        @Override
+        public int getImageSize(int level, int tileSize) {
+            return tileSize << level;
+        }
+
+        @Override
+        public Path getTilePath(Path directory, int level, int column, int row) {
+            return directory.resolve(String.valueOf(level)).resolve(String.valueOf(column)).resolve(row + ".png");
+        }
+
+        @Override
+        public void writeDescriptor(Path directory, int zoomLevels, int tileSize) {
+            // The XYZ layout has no descriptor
+        }
+    },
+
+    /**
+     * The Deep Zoom Image layout. Level n is an image of 2^n by 2^n pixels, from a single pixel
+     * up to the full image, and each tile is stored in "image_files/n/column_row.png". The
+     * descriptor "image.dzi" defines the size of the full image.
+     */
+    DZI {
+        private static final String NAME = "image";
+
+        @Override
+        public int getLevels(int zoomLevels, int tileSize) {
+            if (Integer.bitCount(tileSize) != 1) {
+                throw new IllegalArgumentException("Tile size must be a power of two: " + tileSize);
+            }
+            return Integer.numberOfTrailingZeros(tileSize) + zoomLevels;
+        }
+
+        @Override
+        public int getImageSize(int level, int tileSize) {
+            return 1 << level;
+        }
+
+        @Override
+        public Path getTilePath(Path directory, int level, int column, int row) {
+            return directory.resolve(NAME + "_files").resolve(String.valueOf(level)).resolve(column + "_" + row + ".png");
+        }
+
+        @Override
+        public void writeDescriptor(Path directory, int zoomLevels, int tileSize) throws IOException {
+            final int size = getImageSize(getLevels(zoomLevels, tileSize) - 1, tileSize);
+            final String descriptor = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                    "<Image xmlns=\"http://schemas.microsoft.com/deepzoom/2008\" Format=\"png\" Overlap=\"0\" TileSize=\"" + tileSize + "\">\n" +
+                    "  <Size Width=\"" + size + "\" Height=\"" + size + "\"/>\n" +
+                    "</Image>\n";
+            Files.createDirectories(directory);
+            Files.write(directory.resolve(NAME + ".dzi"), descriptor.getBytes(StandardCharsets.UTF_8));
+        }
+    };
+
+    /**
+     * Returns the number of levels in a pyramid with the given number of zoom levels, where
+     * the first zoom level is a single tile, and each zoom level doubles the size of the image.
+     */
+    public abstract int getLevels(int zoomLevels, int tileSize);
+
+    /**
+     * Returns the width and height in pixels of the image of the given level.
+     */
+    public abstract int getImageSize(int level, int tileSize);
+
+    /**
+     * Returns the path of the given tile.
+     */
+    public abstract Path getTilePath(Path directory, int level, int column, int row);
+
+    /**
+     * Writes any file that describes the pyramid.
+     */
+    public abstract void writeDescriptor(Path directory, int zoomLevels, int tileSize) throws IOException;
+}
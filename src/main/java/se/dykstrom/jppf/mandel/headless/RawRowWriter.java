@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2019 Johan Dykstrom
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package se.dykstrom.jppf.mandel.headless;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes the raw escape times of an image row by row, without any header. Each escape time is
+ * written as an unsigned little-endian integer of one byte if the maximum number of iterations
+ * is less than 256, two bytes if it is less than 65536, and four bytes otherwise, like in a
+ * {@link se.dykstrom.jppf.mandel.model.Line}.
+ *
+ * @author Johan Dykstrom
+ */
+public class RawRowWriter implements RowWriter {
+
+    private final OutputStream out;
+    private final int width;
+    private final int bytesPerPixel;
+    private final byte[] row;
+
+    /**
+     * Creates a new writer.
+     *
+     * @param file The name of the file to write.
+     * @param width The width of the image in pixels.
+     * @param maxIterations The maximum number of iterations used to calculate the escape times.
+     */
+    public RawRowWriter(String file, int width, int maxIterations) throws IOException {
+        this.out = new BufferedOutputStream(new FileOutputStream(file));
+        this.width = width;
+        this.bytesPerPixel = maxIterations <= 0xFF ? 1 : maxIterations <= 0xFFFF ? 2 : 4;
+        this.row = new byte[width * bytesPerPixel];
+    }
+
+    /**
+     * Returns the number of bytes used for each pixel.
+     */
+    public int getBytesPerPixel() {
+        return bytesPerPixel;
+    }
+
+    @Override
+    public void writeRow(int[] iterations, int offset) throws IOException {
+        for (int x = 0, i = 0; x < width; x++) {
+            int value = iterations[offset + x];
+            for (int b = 0; b < bytesPerPixel; b++) {
+                row[i++] = (byte) value;
+                value >>>= 8;
+            }
+        }
+        out.write(row);
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2019 Johan Dykstrom
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package se.dykstrom.jppf.mandel.headless;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Writes an image to a file row by row, from top to bottom, without keeping the image in memory.
+ *
+ * @author Johan Dykstrom
+ */
+public interface RowWriter extends Closeable {
+
+    /**
+     * Writes the next row of the image.
+     *
+     * @param iterations An array that contains the escape times of the row.
+     * @param offset The index in the array of the first pixel in the row.
+     */
+    void writeRow(int[] iterations, int offset) throws IOException;
+}
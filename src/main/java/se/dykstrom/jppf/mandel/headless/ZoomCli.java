@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2019 Johan Dykstrom
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package se.dykstrom.jppf.mandel.headless;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.dykstrom.jppf.mandel.model.Coordinates;
+import se.dykstrom.jppf.mandel.task.RenderBackend;
+import se.dykstrom.jppf.mandel.task.RenderBackends;
+import se.dykstrom.jppf.mandel.task.RenderMode;
+import se.dykstrom.jppf.mandel.task.TaskSpawner;
+import se.dykstrom.jppf.mandel.task.TilePartitioner;
+
+import java.math.BigDecimal;
+
+/**
+ * Renders a zoom animation without a user interface, and writes the frames to numbered PNG or
+ * raw files. See {@link ZoomRenderer}.
+ * <p>
+ * Options are given as {@code --name=value}:
+ * <ul>
+ *     <li>width, height - the size of each frame in pixels (required)</li>
+ *     <li>output - the file name pattern, formatted with the frame number, for example "frame-%05d.png" (required)</li>
+ *     <li>frames - the number of frames (required)</li>
+ *     <li>target-x, target-y - the point to zoom in on, the center of the last frame (required)</li>
+ *     <li>target-size - the width of the last frame in the complex plane (required)</li>
+ *     <li>center-x, center-y - the center of the first frame (default -0.5, 0.0)</li>
+ *     <li>size - the width of the first frame in the complex plane (default 3.0)</li>
+ *     <li>iterations - the maximum number of iterations (default based on the scale of each frame)</li>
+ *     <li>mode - the render mode, exhaustive or mariani_silver (default exhaustive), deep zoom
+ *     frames are always calculated using perturbation theory</li>
+ *     <li>jobs - the number of concurrent jobs per frame (default 0, one job per node)</li>
+ *     <li>tile - the width and height of the tiles (default 64)</li>
+ *     <li>in-flight - the number of frames calculated concurrently (default 3)</li>
+ * </ul>
+ *
+ * @author Johan Dykstrom
+ */
+public class ZoomCli {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ZoomCli.class);
+
+    private static final int DEFAULT_FRAMES_IN_FLIGHT = 3;
+
+    public static void main(String[] args) {
+        int status = 0;
+        try {
+            run(new Options(args));
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: ZoomCli --width=<pixels> --height=<pixels> --output=<pattern> --frames=<frames> --target-x=<x> --target-y=<y>");
+            System.err.println("       --target-size=<size> [--center-x=<x>] [--center-y=<y>] [--size=<size>] [--iterations=<max>] [--mode=<mode>]");
+            System.err.println("       [--jobs=<jobs>] [--tile=<pixels>] [--in-flight=<frames>]");
+            status = 1;
+        } catch (Exception e) {
+            LOGGER.error("Error rendering zoom: " + e.getMessage(), e);
+            status = 1;
+        }
+        // The JPPF client may have started threads that prevent the JVM from exiting
+        System.exit(status);
+    }
+
+    private static void run(Options options) throws Exception {
+        final int width = options.getInt("width");
+        final int height = options.getInt("height");
+        final String output = options.get("output");
+        final int frames = options.getInt("frames");
+        final BigDecimal targetX = new BigDecimal(options.get("target-x"));
+        final BigDecimal targetY = new BigDecimal(options.get("target-y"));
+        final double targetSize = Double.parseDouble(options.get("target-size"));
+        final BigDecimal centerX = options.getDecimal("center-x", "-0.5");
+        final BigDecimal centerY = options.getDecimal("center-y", "0.0");
+        final double size = options.getDouble("size", Coordinates.INITIAL_SIZE);
+        final int maxIterations = options.getMaxIterations();
+        final RenderMode renderMode = options.getRenderMode();
+        final int numberOfJobs = options.getInt("jobs", TaskSpawner.AUTOMATIC_JOBS);
+        final int tileSize = options.getInt("tile", TilePartitioner.DEFAULT_TILE_SIZE);
+        final int framesInFlight = options.getInt("in-flight", DEFAULT_FRAMES_IN_FLIGHT);
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Invalid frame size: " + width + "x" + height);
+        }
+
+        final ZoomRenderer.ZoomPath path = new ZoomRenderer.ZoomPath(centerX, centerY, size, targetX, targetY, targetSize, frames, maxIterations);
+        LOGGER.info("Rendering {} frames of {}x{} pixels, zooming from size {} to {} at [{}, {}], to {}",
+                frames, width, height, size, targetSize, targetX, targetY, output);
+
+        try (RenderBackend backend = RenderBackends.createBackend(numberOfJobs)) {
+            final long start = System.nanoTime();
+            new ZoomRenderer(backend, tileSize, framesInFlight, renderMode).render(path, width, height, output);
+            LOGGER.info("Rendered {} frames in {} ms", frames, (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2019 Johan Dykstrom
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package se.dykstrom.jppf.mandel.headless;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.dykstrom.jppf.mandel.model.Coordinates;
+import se.dykstrom.jppf.mandel.model.ImageAttributes;
+import se.dykstrom.jppf.mandel.model.Line;
+import se.dykstrom.jppf.mandel.task.Parameters;
+import se.dykstrom.jppf.mandel.task.ReferenceOrbit;
+import se.dykstrom.jppf.mandel.task.RenderBackend;
+import se.dykstrom.jppf.mandel.task.RenderMode;
+import se.dykstrom.jppf.mandel.task.TilePartitioner;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Renders a zoom animation, from a start view towards a target point, as a sequence of numbered
+ * image files. The scale changes by the same factor from one frame to the next, and the center
+ * moves so that the last frame is centered on the target point.
+ * <p>
+ * Several frames are calculated concurrently, each in its own call to the backend, so that the
+ * grid is kept busy while the tiles of one frame are finishing, and while the previous frame is
+ * written. The frames are written in order, as soon as each frame and all frames before it are done.
+ *
+ * @author Johan Dykstrom
+ */
+public class ZoomRenderer {
+
+    private final Logger logger = LoggerFactory.getLogger(ZoomRenderer.class);
+
+    private final RenderBackend backend;
+    private final TilePartitioner partitioner;
+    private final int framesInFlight;
+    private final RenderMode renderMode;
+
+    /**
+     * Creates a new zoom renderer.
+     *
+     * @param backend The backend used to calculate the tiles of each frame.
+     * @param tileSize The width and height of the tiles each frame is divided into.
+     * @param framesInFlight The maximum number of frames to calculate concurrently.
+     * @param renderMode The mode used to render the tiles, unless the frame is a deep zoom frame.
+     */
+    public ZoomRenderer(RenderBackend backend, int tileSize, int framesInFlight, RenderMode renderMode) {
+        if (framesInFlight <= 0) {
+            throw new IllegalArgumentException("Invalid number of frames in flight: " + framesInFlight);
+        }
+        this.backend = backend;
+        this.partitioner = new TilePartitioner(tileSize);
+        this.framesInFlight = framesInFlight;
+        this.renderMode = renderMode;
+    }
+
+    /**
+     * Renders all frames of the given zoom, and writes each frame to the file given by the
+     * file pattern, formatted with the frame number, for example "frame-%05d.png".
+     */
+    public void render(ZoomPath path, int width, int height, String filePattern) throws Exception {
+        final ExecutorService executorService = Executors.newFixedThreadPool(framesInFlight);
+        backend.setConcurrentRenders(framesInFlight);
+        try {
+            final long start = System.nanoTime();
+            final Deque<Future<int[]>> inFlight = new ArrayDeque<>();
+            int nextFrame = 0;
+            for (int frame = 0; frame < path.getFrames(); frame++) {
+                // Keep the pipeline full, with the frame to write next at its head
+                while (nextFrame < path.getFrames() && inFlight.size() < framesInFlight) {
+                    final ImageAttributes imageAttributes = path.getImageAttributes(nextFrame, width, height);
+                    inFlight.addLast(executorService.submit(() -> renderFrame(imageAttributes, width, height)));
+                    nextFrame++;
+                }
+
+                final int[] image = await(inFlight.removeFirst());
+                final ImageAttributes imageAttributes = path.getImageAttributes(frame, width, height);
+                writeFrame(image, width, height, imageAttributes.getMaxIterations(), String.format(filePattern, frame));
+
+                final int frames = frame + 1;
+                final long elapsedMillis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+                logger.info("Wrote frame {} of {}, scale = {}, {} frames/min", frames, path.getFrames(),
+                        imageAttributes.getScale(), String.format("%.1f", 60_000.0 * frames / elapsedMillis));
+            }
+        } catch (Exception e) {
+            // Do not leave the remaining frames running on the grid
+            backend.cancel();
+            throw e;
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Calculates one frame, and returns its escape times, row by row. Deep zoom frames are
+     * calculated using perturbation theory, with a reference orbit at the center of the frame.
+     */
+    private int[] renderFrame(ImageAttributes imageAttributes, int width, int height) throws Exception {
+        final int[] image = new int[width * height];
+        List<Parameters> parametersList = partitioner.partitionByCost(0, 0, width, height, imageAttributes);
+        if (imageAttributes.isDeepZoom()) {
+            final ReferenceOrbit referenceOrbit = ReferenceOrbit.forImage(imageAttributes, width, height);
+            parametersList = parametersList.stream()
+                    .map(parameters -> parameters.withRenderMode(RenderMode.PERTURBATION).withReferenceOrbit(referenceOrbit))
+                    .collect(toList());
+        } else {
+            parametersList = parametersList.stream()
+                    .map(parameters -> parameters.withRenderMode(renderMode))
+                    .collect(toList());
+        }
+        backend.render(parametersList, (parameters, lines) -> {
+            synchronized (image) {
+                for (Line line : lines) {
+                    line.getIterations(image, line.getY() * width + line.getX());
+                }
+            }
+        });
+        synchronized (image) {
+            return image;
+        }
+    }
+
+    private static void writeFrame(int[] image, int width, int height, int maxIterations, String file) throws IOException {
+        try (RowWriter writer = file.endsWith(".raw")
+                ? new RawRowWriter(file, width, maxIterations)
+                : new PngRowWriter(file, width, height, maxIterations)) {
+            for (int y = 0; y < height; y++) {
+                writer.writeRow(image, y * width);
+            }
+        }
+    }
+
+    private static int[] await(Future<int[]> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+        }
+    }
+
+    /**
+     * Defines the views of a zoom animation, from a start view to a target view. The size of
+     * the view, that is, its width in the complex plane, changes by the same factor from one
+     * frame to the next. The center moves from the start center to the target point, in
+     * proportion to the remaining change in size, so that the zoom converges smoothly on the
+     * target point.
+     */
+    public static class ZoomPath {
+
+        private final BigDecimal startX;
+        private final BigDecimal startY;
+        private final double startSize;
+        private final BigDecimal targetX;
+        private final BigDecimal targetY;
+        private final double targetSize;
+        private final int frames;
+        private final int maxIterations;
+
+        /**
+         * Creates a new zoom path.
+         *
+         * @param startX The X coordinate of the center of the first frame.
+         * @param startY The Y coordinate of the center of the first frame.
+         * @param startSize The width of the first frame in the complex plane.
+         * @param targetX The X coordinate of the center of the last frame.
+         * @param targetY The Y coordinate of the center of the last frame.
+         * @param targetSize The width of the last frame in the complex plane.
+         * @param frames The number of frames.
+         * @param maxIterations The maximum number of iterations, or zero to use a limit based on the scale of each frame.
+         */
+        public ZoomPath(BigDecimal startX, BigDecimal startY, double startSize,
+                        BigDecimal targetX, BigDecimal targetY, double targetSize, int frames, int maxIterations) {
+            if (frames <= 0 || startSize <= 0 || targetSize <= 0) {
+                throw new IllegalArgumentException("Invalid zoom: " + frames + " frames, size " + startSize + " to " + targetSize);
+            }
+            this.startX = startX;
+            this.startY = startY;
+            this.startSize = startSize;
+            this.targetX = targetX;
+            this.targetY = targetY;
+            this.targetSize = targetSize;
+            this.frames = frames;
+            this.maxIterations = maxIterations;
+        }
+
+        public int getFrames() {
+            return frames;
+        }
+
+        /**
+         * Returns the image attributes of the given frame, for an image with the given size.
+         * The image attributes of a frame are always the same, and can be recalculated when needed.
+         */
+        public ImageAttributes getImageAttributes(int frame, int width, int height) {
+            final double t = (frames == 1) ? 0.0 : (double) frame / (frames - 1);
+            final double size = startSize * Math.pow(targetSize / startSize, t);
+            // The part of the distance from the target point to the start center that remains
+            final double remaining = (startSize == targetSize) ? 1.0 - t : (size - targetSize) / (startSize - targetSize);
+
+            final double scale = size / width;
+            final MathContext mathContext = Coordinates.precisionForScale(scale);
+            final BigDecimal factor = new BigDecimal(remaining);
+            final BigDecimal centerX = targetX.add(startX.subtract(targetX).multiply(factor), mathContext);
+            final BigDecimal centerY = targetY.add(startY.subtract(targetY).multiply(factor), mathContext);
+            final Coordinates coordinates = new Coordinates(centerX, centerY).translate(-width / 2.0 * scale, -height / 2.0 * scale, scale);
+            return withMaxIterations(new ImageAttributes(coordinates, scale));
+        }
+
+        private ImageAttributes withMaxIterations(ImageAttributes imageAttributes) {
+            return (maxIterations > 0) ? imageAttributes.withMaxIterations(maxIterations) : imageAttributes;
+        }
+    }
+}
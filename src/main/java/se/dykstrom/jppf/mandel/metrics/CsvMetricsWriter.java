@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2019 Johan Dykstrom
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package se.dykstrom.jppf.mandel.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Writes the metrics of each task as one line in a CSV file, to allow analysing the performance
+ * of the nodes and the partitioning of the image in a spreadsheet or a script.
+ * <p>
+ * Metrics must never affect rendering, so if writing the file fails, the error is logged, and
+ * the writer is disabled.
+ *
+ * @author Johan Dykstrom
+ */
+class CsvMetricsWriter implements AutoCloseable {
+
+    private static final String HEADER = "job,task,node_id,host,start_ms,compute_ms,queue_wait_ms,transfer_ms,pixels,iterations,result_bytes";
+
+    private final Logger logger = LoggerFactory.getLogger(CsvMetricsWriter.class);
+
+    private final BufferedWriter writer;
+
+    /** True if writing has failed, and the writer is disabled. */
+    private boolean failed;
+
+    CsvMetricsWriter(Path file) throws IOException {
+        writer = Files.newBufferedWriter(file);
+        writer.write(HEADER);
+        writer.newLine();
+    }
+
+    synchronized void write(String jobName, TaskMetrics metrics, long queueWaitMillis, long transferMillis) {
+        if (failed) {
+            return;
+        }
+        try {
+            writer.write(jobName + "," + metrics.getTaskName() + "," + metrics.getNodeId() + "," + metrics.getHostName() + "," +
+                         metrics.getStartMillis() + "," + String.format(Locale.ROOT, "%.3f", metrics.getComputeNanos() / 1e6) + "," +
+                         queueWaitMillis + "," + transferMillis + "," + metrics.getPixels() + "," + metrics.getIterations() + "," +
+                         metrics.getResultBytes());
+            writer.newLine();
+        } catch (IOException e) {
+            disable(e);
+        }
+    }
+
+    synchronized void flush() {
+        if (failed) {
+            return;
+        }
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            disable(e);
+        }
+    }
+
+    private void disable(IOException e) {
+        logger.warn("Failed to write metrics file, no more task metrics will be written: " + e.getMessage());
+        failed = true;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright (C) 2019 Johan Dykstrom
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package se.dykstrom.jppf.mandel.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Collects the metrics of all tasks returned to a render backend, and aggregates them per node
+ * and per job. The statistics are available using JMX, and the metrics of each task may also be
+ * written to a CSV file.
+ * <p>
+ * The time from job submission until a task starts, the queue wait time, and the time from a
+ * task is done until it is returned, the transfer time, are calculated using both the client
+ * clock and the node clock, and are only accurate if the clocks are synchronized.
+ *
+ * @author Johan Dykstrom
+ */
+public class GridMetrics implements GridMetricsMBean, AutoCloseable {
+
+    /** The number of completed jobs to keep statistics for. */
+    private static final int MAX_JOBS = 20;
+
+    private final Logger logger = LoggerFactory.getLogger(GridMetrics.class);
+
+    private final CsvMetricsWriter csvWriter;
+
+    private ObjectName objectName;
+
+    private Statistics total = new Statistics();
+    private final Map<String, Statistics> nodes = new TreeMap<>();
+    private final Map<String, Statistics> jobs = new HashMap<>();
+    private final Deque<String> completedJobs = new ArrayDeque<>();
+
+    /**
+     * Creates a new metrics object, that does not write any CSV file.
+     */
+    public GridMetrics() {
+        this.csvWriter = null;
+    }
+
+    /**
+     * Creates a new metrics object, that writes the metrics of each task to the given CSV file.
+     */
+    public GridMetrics(Path csvFile) throws IOException {
+        this.csvWriter = new CsvMetricsWriter(csvFile);
+        logger.info("Writing task metrics to {}", csvFile);
+    }
+
+    /**
+     * Registers this object in the platform MBean server, to make the statistics available using
+     * JMX. Failing to register is logged, but otherwise ignored.
+     */
+    public GridMetrics register() {
+        try {
+            objectName = new ObjectName("se.dykstrom.jppf.mandel:type=GridMetrics");
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        } catch (JMException e) {
+            logger.warn("Failed to register grid metrics MBean: " + e.getMessage());
+            objectName = null;
+        }
+        return this;
+    }
+
+    /**
+     * Starts collecting statistics for the given job. Must be called before any task of the job is recorded.
+     */
+    public synchronized void startJob(String jobName) {
+        jobs.put(jobName, new Statistics());
+    }
+
+    /**
+     * Records the metrics of one task. The statistics of the job are only updated if the job
+     * has been started, and its statistics have not been evicted. Tasks that are returned late,
+     * for example by cancelled jobs, must not add jobs that are never evicted.
+     *
+     * @param jobName The name of the job the task belonged to.
+     * @param metrics The metrics measured by the task.
+     * @param submitMillis The client time when the job was submitted.
+     * @param returnMillis The client time when the task was returned.
+     */
+    public void record(String jobName, TaskMetrics metrics, long submitMillis, long returnMillis) {
+        final long computeMillis = metrics.getComputeNanos() / 1_000_000;
+        final long queueWaitMillis = Math.max(0, metrics.getStartMillis() - submitMillis);
+        final long transferMillis = Math.max(0, returnMillis - metrics.getStartMillis() - computeMillis);
+        synchronized (this) {
+            total.add(metrics, queueWaitMillis, transferMillis);
+            nodes.computeIfAbsent(metrics.getNodeName(), name -> new Statistics()).add(metrics, queueWaitMillis, transferMillis);
+            final Statistics job = jobs.get(jobName);
+            if (job != null) {
+                job.add(metrics, queueWaitMillis, transferMillis);
+            }
+        }
+        if (csvWriter != null) {
+            csvWriter.write(jobName, metrics, queueWaitMillis, transferMillis);
+        }
+    }
+
+    /**
+     * Marks the given job as completed, and logs its statistics.
+     */
+    public void completeJob(String jobName) {
+        synchronized (this) {
+            final Statistics statistics = jobs.get(jobName);
+            if (statistics != null) {
+                logger.info("Job {}: {}", jobName, statistics);
+                completedJobs.addLast(jobName);
+                while (completedJobs.size() > MAX_JOBS) {
+                    jobs.remove(completedJobs.removeFirst());
+                }
+            }
+        }
+        if (csvWriter != null) {
+            csvWriter.flush();
+        }
+    }
+
+    @Override
+    public synchronized long getTasks() {
+        return total.tasks;
+    }
+
+    @Override
+    public synchronized long getPixels() {
+        return total.pixels;
+    }
+
+    @Override
+    public synchronized long getIterations() {
+        return total.iterations;
+    }
+
+    @Override
+    public synchronized double getIterationsPerSecond() {
+        return total.getIterationsPerSecond();
+    }
+
+    @Override
+    public synchronized long getComputeMillis() {
+        return total.computeNanos / 1_000_000;
+    }
+
+    @Override
+    public synchronized double getMaxMeanComputeRatio() {
+        return total.getMaxMeanRatio();
+    }
+
+    @Override
+    public synchronized long getQueueWaitMillis() {
+        return total.queueWaitMillis;
+    }
+
+    @Override
+    public synchronized long getTransferMillis() {
+        return total.transferMillis;
+    }
+
+    @Override
+    public synchronized long getResultBytes() {
+        return total.resultBytes;
+    }
+
+    @Override
+    public synchronized String[] getNodeStatistics() {
+        return nodes.entrySet().stream().map(entry -> entry.getKey() + ": " + entry.getValue()).toArray(String[]::new);
+    }
+
+    @Override
+    public synchronized String[] getJobStatistics() {
+        return completedJobs.stream().map(name -> name + ": " + jobs.get(name)).toArray(String[]::new);
+    }
+
+    @Override
+    public synchronized void reset() {
+        total = new Statistics();
+        nodes.clear();
+        jobs.clear();
+        completedJobs.clear();
+    }
+
+    /**
+     * Unregisters this object from the MBean server, and closes the CSV file, if any.
+     */
+    @Override
+    public void close() {
+        if (objectName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+            } catch (JMException e) {
+                logger.warn("Failed to unregister grid metrics MBean: " + e.getMessage());
+            }
+            objectName = null;
+        }
+        if (csvWriter != null) {
+            try {
+                csvWriter.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close metrics file: " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return total.toString();
+    }
+
+    /**
+     * Statistics summed over a number of tasks.
+     */
+    private static class Statistics {
+
+        private long tasks;
+        private long pixels;
+        private long iterations;
+        private long computeNanos;
+        private long maxComputeNanos;
+        private long queueWaitMillis;
+        private long transferMillis;
+        private long resultBytes;
+
+        void add(TaskMetrics metrics, long queueWaitMillis, long transferMillis) {
+            this.tasks++;
+            this.pixels += metrics.getPixels();
+            this.iterations += metrics.getIterations();
+            this.computeNanos += metrics.getComputeNanos();
+            this.maxComputeNanos = Math.max(maxComputeNanos, metrics.getComputeNanos());
+            this.queueWaitMillis += queueWaitMillis;
+            this.transferMillis += transferMillis;
+            this.resultBytes += metrics.getResultBytes();
+        }
+
+        double getIterationsPerSecond() {
+            return computeNanos == 0 ? 0 : iterations * 1e9 / computeNanos;
+        }
+
+        /**
+         * Returns the ratio between the longest and the mean compute time of the tasks. A high
+         * ratio means that the work was unevenly divided between the tasks.
+         */
+        double getMaxMeanRatio() {
+            return computeNanos == 0 ? 0 : (double) maxComputeNanos * tasks / computeNanos;
+        }
+
+        @Override
+        public String toString() {
+            return tasks + " tasks, " + pixels + " pixels, " + String.format("%.3g", getIterationsPerSecond()) + " iterations/s, " +
+                   "compute " + computeNanos / 1_000_000 + " ms (max/mean " + String.format("%.2f", getMaxMeanRatio()) + "), queue wait " + queueWaitMillis + " ms, " +
+                   "transfer " + transferMillis + " ms, " + resultBytes + " bytes";
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2019 Johan Dykstrom
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package se.dykstrom.jppf.mandel.metrics;
+
+/**
+ * The management interface of {@link GridMetrics}, used to monitor the tasks using JMX.
+ * All times are summed over all tasks.
+ *
+ * @author Johan Dykstrom
+ */
+public interface GridMetricsMBean {
+
+    /** Returns the number of tasks returned. */
+    long getTasks();
+
+    /** Returns the number of pixels calculated. */
+    long getPixels();
+
+    /** Returns the number of iterations actually performed by the kernels, see {@link TaskMetrics#getIterations()}. */
+    long getIterations();
+
+    /** Returns the number of iterations per second of compute time. */
+    double getIterationsPerSecond();
+
+    /** Returns the time spent calculating tiles in milliseconds. */
+    long getComputeMillis();
+
+    /** Returns the ratio between the longest and the mean compute time of a task. */
+    double getMaxMeanComputeRatio();
+
+    /** Returns the time from job submission until the tasks started, in milliseconds. */
+    long getQueueWaitMillis();
+
+    /** Returns the time from the tasks were done until they were returned to the client, in milliseconds. */
+    long getTransferMillis();
+
+    /** Returns the number of bytes used to store the escape times of the results. */
+    long getResultBytes();
+
+    /** Returns one line of statistics for each node that has executed tasks. */
+    String[] getNodeStatistics();
+
+    /** Returns one line of statistics for each of the most recently completed jobs. */
+    String[] getJobStatistics();
+
+    /** Resets all statistics. */
+    void reset();
+}
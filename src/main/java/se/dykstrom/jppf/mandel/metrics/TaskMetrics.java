@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2019 Johan Dykstrom
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package se.dykstrom.jppf.mandel.metrics;
+
+import se.dykstrom.jppf.mandel.model.Line;
+
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.List;
+
+/**
+ * Measurements made by a single task while calculating a tile. The measurements are made on
+ * the node that executes the task, and returned to the client together with the result.
+ *
+ * @author Johan Dykstrom
+ */
+public class TaskMetrics implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** The name of the host that executes the tasks. */
+    private static final String HOST_NAME = findHostName();
+
+    private final String taskName;
+    private final String nodeId;
+    private final String hostName;
+    private final long startMillis;
+    private final long computeNanos;
+    private final long pixels;
+    private final long iterations;
+    private final long resultBytes;
+
+    TaskMetrics(String taskName, String nodeId, String hostName, long startMillis, long computeNanos,
+                long pixels, long iterations, long resultBytes) {
+        this.taskName = taskName;
+        this.nodeId = nodeId;
+        this.hostName = hostName;
+        this.startMillis = startMillis;
+        this.computeNanos = computeNanos;
+        this.pixels = pixels;
+        this.iterations = iterations;
+        this.resultBytes = resultBytes;
+    }
+
+    /**
+     * Creates a new metrics object for a task that has calculated the given lines.
+     *
+     * @param taskName The name of the task.
+     * @param nodeId The UUID of the node that executed the task, or "local".
+     * @param startMillis The wall clock time when the task started, in milliseconds since the epoch.
+     * @param computeNanos The time it took to calculate the lines, in nanoseconds.
+     * @param iterations The number of iterations performed while calculating the lines.
+     * @param lines The calculated lines.
+     */
+    public static TaskMetrics create(String taskName, String nodeId, long startMillis, long computeNanos, long iterations, List<Line> lines) {
+        long pixels = 0;
+        long resultBytes = 0;
+        for (Line line : lines) {
+            pixels += line.getWidth();
+            resultBytes += line.getDataSize();
+        }
+        return new TaskMetrics(taskName, nodeId, HOST_NAME, startMillis, computeNanos, pixels, iterations, resultBytes);
+    }
+
+    private static String findHostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "unknown";
+        }
+    }
+
+    public String getTaskName() {
+        return taskName;
+    }
+
+    /**
+     * Returns a short, human-readable name of the node that executed the task, made up of
+     * the host name and the start of the node UUID.
+     */
+    public String getNodeName() {
+        return hostName + "/" + (nodeId.length() > 8 ? nodeId.substring(0, 8) : nodeId);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public String getHostName() {
+        return hostName;
+    }
+
+    /**
+     * Returns the wall clock time on the node when the task started, in milliseconds since the epoch.
+     */
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    /**
+     * Returns the time it took to calculate the tile, in nanoseconds.
+     */
+    public long getComputeNanos() {
+        return computeNanos;
+    }
+
+    /**
+     * Returns the number of pixels calculated.
+     */
+    public long getPixels() {
+        return pixels;
+    }
+
+    /**
+     * Returns the number of iterations performed by the kernel. Points found to belong to the set
+     * by the cardioid and bulb tests or by periodicity checking, and pixels filled by the
+     * Mariani-Silver algorithm, only count the iterations actually performed.
+     */
+    public long getIterations() {
+        return iterations;
+    }
+
+    /**
+     * Returns the number of bytes used to store the escape times of the result.
+     */
+    public long getResultBytes() {
+        return resultBytes;
+    }
+
+    @Override
+    public String toString() {
+        return "[" + taskName + ", " + getNodeName() + ", " + computeNanos / 1_000_000 + " ms, " + pixels + " pixels, " +
+               iterations + " iterations, " + resultBytes + " bytes]";
+    }
+}
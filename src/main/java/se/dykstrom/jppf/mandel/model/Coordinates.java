@@ -14,14 +14,21 @@
  * You should have received a copy of the GNU General Public License
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
-
 package se.dykstrom.jppf.mandel.model;
 
 import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Objects;
 
 /**
  * Represents the coordinates in the Mandelbrot coordinate space used to calculate the image,
  * or one part of the image.
+ * <p>
+ * The coordinates are stored with arbitrary precision, to allow zooming in deeper than the
+ * precision of a {@code double}. The {@code double} values returned by {@link #getMinX()} and
+ * {@link #getMinY()} are the exact values rounded to the nearest {@code double}.
  *
  * @author Johan Dykstrom
  */
@@ -31,12 +38,35 @@ public class Coordinates implements Serializable {
 
     public static final double INITIAL_SIZE = 3.0;
 
+    /** The minimum number of significant digits used when moving coordinates. */
+    private static final int MIN_DIGITS = 17;
+
+    /** The number of digits kept in addition to those needed to tell two neighbouring pixels apart. */
+    private static final int GUARD_DIGITS = 8;
+
+    private final BigDecimal exactMinX;
+    private final BigDecimal exactMinY;
     private final double minX;
     private final double minY;
 
     public Coordinates(double minX, double minY) {
-        this.minX = minX;
-        this.minY = minY;
+        this(new BigDecimal(minX), new BigDecimal(minY));
+    }
+
+    public Coordinates(BigDecimal minX, BigDecimal minY) {
+        this.exactMinX = minX;
+        this.exactMinY = minY;
+        this.minX = minX.doubleValue();
+        this.minY = minY.doubleValue();
+    }
+
+    /**
+     * Returns the precision needed to represent coordinates in an image with the given scale,
+     * that is, enough digits to tell two neighbouring pixels apart, with some margin.
+     */
+    public static MathContext precisionForScale(double scale) {
+        final int digits = (int) Math.ceil(-Math.log10(scale)) + GUARD_DIGITS;
+        return new MathContext(Math.max(MIN_DIGITS, digits), RoundingMode.HALF_EVEN);
     }
 
     public double getMinX() {
@@ -47,12 +77,53 @@ public class Coordinates implements Serializable {
         return minY;
     }
 
+    public BigDecimal getExactMinX() {
+        return exactMinX;
+    }
+
+    public BigDecimal getExactMinY() {
+        return exactMinY;
+    }
+
     public Coordinates withMinY(double minY) {
-        return new Coordinates(minX, minY);
+        return new Coordinates(exactMinX, new BigDecimal(minY));
+    }
+
+    /**
+     * Returns new coordinates, moved the given distance, and rounded to the precision needed
+     * for an image with the given scale. The distances are typically small compared to the
+     * coordinates, so the move is calculated with arbitrary precision.
+     *
+     * @param dx The distance to move along the X axis.
+     * @param dy The distance to move along the Y axis.
+     * @param scale The scale of the image that uses the new coordinates.
+     * @return The moved coordinates.
+     */
+    public Coordinates translate(double dx, double dy, double scale) {
+        final MathContext mathContext = precisionForScale(scale);
+        return new Coordinates(exactMinX.add(new BigDecimal(dx), mathContext), exactMinY.add(new BigDecimal(dy), mathContext));
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        Coordinates that = (Coordinates) obj;
+        return exactMinX.compareTo(that.exactMinX) == 0 && exactMinY.compareTo(that.exactMinY) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        // Coordinates that are equal have equal double values, but not necessarily equal BigDecimal scales
+        return Objects.hash(minX, minY);
     }
 
     @Override
     public String toString() {
-        return "[" + minX + ", " + minY + "]";
+        return "[" + exactMinX + ", " + exactMinY + "]";
     }
 }
@@ -18,27 +18,78 @@
 package se.dykstrom.jppf.mandel.model;
 
 import java.io.Serializable;
+import java.util.Objects;
 
 import static se.dykstrom.jppf.mandel.model.Coordinates.INITIAL_COORDINATES;
 import static se.dykstrom.jppf.mandel.model.Coordinates.INITIAL_SIZE;
 
 /**
  * Defines attributes needed to draw an image, that is coordinates for the upper left corner in the Mandelbrot
- * coordinate space, and a scale to convert between Mandelbrot coordinates and pixels.
+ * coordinate space, a scale to convert between Mandelbrot coordinates and pixels, and the maximum number of
+ * iterations to use when calculating the image.
  */
 public class ImageAttributes implements Serializable {
 
     /** The initial width and height of the image in pixels. */
     public static final int INITIAL_IMAGE_SIZE_IN_PIXELS = 500;
 
-    public static final ImageAttributes INITIAL_ATTRIBUTES = new ImageAttributes(INITIAL_COORDINATES, INITIAL_SIZE / INITIAL_IMAGE_SIZE_IN_PIXELS);
+    /** The scale of the initial image. */
+    public static final double INITIAL_SCALE = INITIAL_SIZE / INITIAL_IMAGE_SIZE_IN_PIXELS;
+
+    /** The maximum number of iterations used for the initial image, or any image with a larger scale. */
+    public static final int MIN_ITERATIONS = 64;
+
+    /** The upper limit for the maximum number of iterations, regardless of scale. */
+    public static final int MAX_ITERATIONS = 65_535;
+
+    /** The number of iterations added for every doubling of the zoom factor. */
+    private static final int ITERATIONS_PER_OCTAVE = 32;
+
+    /**
+     * The scale below which images are calculated using perturbation theory. Below this scale,
+     * the distance between two neighbouring pixels is too small compared to the coordinates to
+     * be represented accurately in a {@code double}.
+     */
+    public static final double DEEP_ZOOM_SCALE = 1e-12;
+
+    /**
+     * The smallest scale supported. With perturbation theory, the differences between the pixels
+     * and the reference point are still calculated in {@code double}, and must not underflow.
+     */
+    public static final double MIN_SCALE = 1e-290;
+
+    public static final ImageAttributes INITIAL_ATTRIBUTES = new ImageAttributes(INITIAL_COORDINATES, INITIAL_SCALE);
 
     private final Coordinates coordinates;
     private final double scale;
+    private final int maxIterations;
 
+    /**
+     * Creates a new image attributes object with a maximum number of iterations calculated from the scale.
+     */
     public ImageAttributes(Coordinates coordinates, double scale) {
+        this(coordinates, scale, iterationsForScale(scale));
+    }
+
+    public ImageAttributes(Coordinates coordinates, double scale, int maxIterations) {
         this.coordinates = coordinates;
         this.scale = scale;
+        this.maxIterations = maxIterations;
+    }
+
+    /**
+     * Returns a suitable maximum number of iterations for the given scale. Deeper zooms need more
+     * iterations to resolve the details close to the border of the set, so the number of iterations
+     * grows with the logarithm of the zoom factor, starting at {@link #MIN_ITERATIONS} for the
+     * initial scale, and limited to {@link #MAX_ITERATIONS}.
+     */
+    public static int iterationsForScale(double scale) {
+        final double zoom = INITIAL_SCALE / scale;
+        if (zoom <= 1.0) {
+            return MIN_ITERATIONS;
+        }
+        final double octaves = Math.log(zoom) / Math.log(2);
+        return (int) Math.min(MAX_ITERATIONS, MIN_ITERATIONS + ITERATIONS_PER_OCTAVE * octaves);
     }
 
     public Coordinates getCoordinates() {
@@ -52,12 +103,48 @@ public class ImageAttributes implements Serializable {
         return scale;
     }
 
+    /**
+     * Returns {@code true} if the image is zoomed in so deep that it must be calculated using
+     * perturbation theory, see {@link #DEEP_ZOOM_SCALE}.
+     */
+    public boolean isDeepZoom() {
+        return scale < DEEP_ZOOM_SCALE;
+    }
+
+    /**
+     * Returns the maximum number of iterations used to calculate each point in the image.
+     */
+    public int getMaxIterations() {
+        return maxIterations;
+    }
+
     public ImageAttributes withCoordinates(Coordinates coordinates) {
-        return new ImageAttributes(coordinates, scale);
+        return new ImageAttributes(coordinates, scale, maxIterations);
+    }
+
+    public ImageAttributes withMaxIterations(int maxIterations) {
+        return new ImageAttributes(coordinates, scale, maxIterations);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        ImageAttributes that = (ImageAttributes) obj;
+        return Double.compare(that.scale, scale) == 0 && maxIterations == that.maxIterations && coordinates.equals(that.coordinates);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(coordinates, scale, maxIterations);
     }
 
     @Override
     public String toString() {
-        return "[" + coordinates + ", " + scale + "]";
+        return "[" + coordinates + ", " + scale + ", " + maxIterations + "]";
     }
 }
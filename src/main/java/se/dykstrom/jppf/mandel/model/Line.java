@@ -17,19 +17,228 @@
 
 package se.dykstrom.jppf.mandel.model;
 
+import java.io.Externalizable;
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInput;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutput;
 import java.io.Serializable;
+import java.util.Arrays;
 
 /**
- * Contains RGB color data for a single line in an image.
+ * Contains the escape times for a single line in an image, or a part of a line, starting at
+ * pixel x. To keep the line small when sent over the network, the escape times are stored
+ * using as few bytes per pixel as possible, given the maximum number of iterations: one byte
+ * if the maximum is less than 256, two bytes if it is less than 65536, and four bytes otherwise.
+ * <p>
+ * Lines often contain long runs of identical escape times, for example inside the set, so the
+ * escape times are also run-length encoded, if that makes the line smaller. The encoded data
+ * is a sequence of chunks, each starting with a varint control word. If the lowest bit of the
+ * control word is set, the chunk is a run of {@code (control >>> 1) + MIN_RUN} copies of a
+ * single escape time. Otherwise, the chunk contains {@code (control >>> 1) + 1} literal escape
+ * times. Each escape time is stored using the number of bytes per pixel described above.
+ * <p>
+ * A line may also contain the fraction of each escape time, used for smooth coloring. The
+ * fractions are in units of 1 / {@link #FRACTION_SCALE} of an iteration, and are stored using
+ * one byte per pixel, run-length encoded in the same way as the escape times.
+ * <p>
+ * Lines are serialized using a hand-written format, see {@link SerializedForm}, that contains
+ * only the header fields, as varints, and the encoded escape time and fraction bytes.
  */
 public class Line implements Serializable {
 
+    private static final long serialVersionUID = 1L;
+
+    /** The number of bits used to store the fraction of an escape time. */
+    public static final int FRACTION_BITS = 8;
+
+    /** The fractions of the escape times are in the range [0, FRACTION_SCALE). */
+    public static final int FRACTION_SCALE = 1 << FRACTION_BITS;
+
+    /** The shortest run of identical escape times that is encoded as a run. */
+    private static final int MIN_RUN = 3;
+
+    private final int x;
     private final int y;
-    private final int[] rgb;
+    private final int width;
+    private final int step;
+    private final int blockSize;
+    private final int bytesPerPixel;
+    private final boolean runLengthEncoded;
+    private final byte[] data;
+    private final boolean fractionsRunLengthEncoded;
+
+    /** The encoded fractions of the escape times, or {@code null} if all fractions are zero. */
+    private final byte[] fractionData;
+
+    /**
+     * Creates a new line from the given escape times.
+     *
+     * @param x The x-coordinate of the first pixel in the line.
+     * @param y The line number of the line.
+     * @param iterations The escape times, each in the range [0, maxIterations].
+     * @param maxIterations The maximum number of iterations used to calculate the escape times.
+     */
+    public Line(int x, int y, int[] iterations, int maxIterations) {
+        this(x, y, 1, 1, iterations, null, maxIterations);
+    }
+
+    /**
+     * Creates a new line from the given escape times and their fractions.
+     *
+     * @param x The x-coordinate of the first pixel in the line.
+     * @param y The line number of the line.
+     * @param iterations The escape times, each in the range [0, maxIterations].
+     * @param fractions The fractions of the escape times, each in the range [0, FRACTION_SCALE).
+     * @param maxIterations The maximum number of iterations used to calculate the escape times.
+     */
+    public Line(int x, int y, int[] iterations, int[] fractions, int maxIterations) {
+        this(x, y, 1, 1, iterations, fractions, maxIterations);
+    }
 
-    public Line(int y, int[] rgb) {
+    /**
+     * Creates a new line of sampled escape times, where each sample is an approximation of
+     * a square block of pixels, with the sample in its top-left corner.
+     *
+     * @param x The x-coordinate of the first sample in the line.
+     * @param y The line number of the line.
+     * @param step The distance in pixels between two samples.
+     * @param blockSize The width and height in pixels of the block each sample approximates.
+     * @param iterations The escape times, each in the range [0, maxIterations].
+     * @param fractions The fractions of the escape times, each in the range [0, FRACTION_SCALE),
+     *                  or {@code null} if the fractions are unknown, and should be zero.
+     * @param maxIterations The maximum number of iterations used to calculate the escape times.
+     */
+    public Line(int x, int y, int step, int blockSize, int[] iterations, int[] fractions, int maxIterations) {
+        this.x = x;
+        this.y = y;
+        this.step = step;
+        this.blockSize = blockSize;
+        this.width = iterations.length;
+        this.bytesPerPixel = bytesPerPixel(maxIterations);
+        final byte[] encoded = encodeRunLength(iterations, bytesPerPixel);
+        this.runLengthEncoded = encoded != null;
+        this.data = runLengthEncoded ? encoded : encodeRaw(iterations, bytesPerPixel);
+        if (fractions != null) {
+            final byte[] encodedFractions = encodeRunLength(fractions, 1);
+            this.fractionsRunLengthEncoded = encodedFractions != null;
+            this.fractionData = fractionsRunLengthEncoded ? encodedFractions : encodeRaw(fractions, 1);
+        } else {
+            this.fractionsRunLengthEncoded = false;
+            this.fractionData = null;
+        }
+    }
+
+    /**
+     * Creates a new line from already encoded escape times and fractions.
+     */
+    private Line(int x, int y, int width, int step, int blockSize, int bytesPerPixel, boolean runLengthEncoded, byte[] data,
+                 boolean fractionsRunLengthEncoded, byte[] fractionData) {
+        this.x = x;
         this.y = y;
-        this.rgb = rgb;
+        this.width = width;
+        this.step = step;
+        this.blockSize = blockSize;
+        this.bytesPerPixel = bytesPerPixel;
+        this.runLengthEncoded = runLengthEncoded;
+        this.data = data;
+        this.fractionsRunLengthEncoded = fractionsRunLengthEncoded;
+        this.fractionData = fractionData;
+    }
+
+    /**
+     * Stores the values using the given number of bytes per pixel, least significant byte first.
+     */
+    private static byte[] encodeRaw(int[] iterations, int bytesPerPixel) {
+        final byte[] data = new byte[iterations.length * bytesPerPixel];
+        for (int p = 0, i = 0; p < iterations.length; p++) {
+            i = putValue(data, i, iterations[p], bytesPerPixel);
+        }
+        return data;
+    }
+
+    /**
+     * Run-length encodes the values, escape times or fractions, as described in the class comment.
+     * Returns {@code null} if the encoded data would not be smaller than the raw data.
+     */
+    private static byte[] encodeRunLength(int[] iterations, int bytesPerPixel) {
+        final int rawSize = iterations.length * bytesPerPixel;
+        // Each put writes at most five bytes, and the size is checked after each put
+        final byte[] buffer = new byte[rawSize + 5];
+        int i = 0;
+        int literalStart = 0;
+        int p = 0;
+        while (p < iterations.length) {
+            int run = 1;
+            while (p + run < iterations.length && iterations[p + run] == iterations[p]) {
+                run++;
+            }
+            if (run >= MIN_RUN) {
+                // Write any pending literals, and then the run
+                for (int q = literalStart; q < p && i < rawSize; q++) {
+                    if (q == literalStart) {
+                        i = putVarint(buffer, i, (p - literalStart - 1) << 1);
+                    }
+                    i = putValue(buffer, i, iterations[q], bytesPerPixel);
+                }
+                if (i < rawSize) {
+                    i = putVarint(buffer, i, (run - MIN_RUN) << 1 | 1);
+                }
+                if (i < rawSize) {
+                    i = putValue(buffer, i, iterations[p], bytesPerPixel);
+                }
+                literalStart = p + run;
+            }
+            p += run;
+            if (i >= rawSize) {
+                return null;
+            }
+        }
+        for (int q = literalStart; q < iterations.length && i < rawSize; q++) {
+            if (q == literalStart) {
+                i = putVarint(buffer, i, (iterations.length - literalStart - 1) << 1);
+            }
+            i = putValue(buffer, i, iterations[q], bytesPerPixel);
+        }
+        return (i < rawSize) ? Arrays.copyOf(buffer, i) : null;
+    }
+
+    private static int putValue(byte[] buffer, int index, int value, int bytesPerPixel) {
+        for (int b = 0; b < bytesPerPixel; b++) {
+            buffer[index++] = (byte) value;
+            value >>>= 8;
+        }
+        return index;
+    }
+
+    private static int putVarint(byte[] buffer, int index, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer[index++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[index++] = (byte) value;
+        return index;
+    }
+
+    /**
+     * Returns the number of bytes needed to store escape times in the range [0, maxIterations].
+     */
+    private static int bytesPerPixel(int maxIterations) {
+        if (maxIterations <= 0xFF) {
+            return 1;
+        } else if (maxIterations <= 0xFFFF) {
+            return 2;
+        } else {
+            return 4;
+        }
+    }
+
+    /**
+     * Returns the x-coordinate of the first pixel in this line.
+     */
+    public int getX() {
+        return x;
     }
 
     /**
@@ -40,9 +249,265 @@ public class Line implements Serializable {
     }
 
     /**
-     * Returns an array of RGB color data for this line.
+     * Returns the number of samples in this line, that is also the width of this line
+     * in pixels, unless this line is sampled.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the distance in pixels between two samples, that is one unless this line is sampled.
+     */
+    public int getStep() {
+        return step;
+    }
+
+    /**
+     * Returns the width and height in pixels of the block each sample approximates, that is
+     * one unless this line is sampled.
      */
-    public int[] getRGB() {
-        return rgb;
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * Returns the number of bytes used to store the escape times and fractions of this line, after encoding.
+     */
+    public int getDataSize() {
+        return data.length + (fractionData != null ? fractionData.length : 0);
+    }
+
+    /**
+     * Returns a copy of this line, moved to the given line number. The copy shares the encoded
+     * escape times and fractions with this line, which is safe since they are never modified.
+     */
+    public Line withY(int y) {
+        return new Line(x, y, width, step, blockSize, bytesPerPixel, runLengthEncoded, data, fractionsRunLengthEncoded, fractionData);
+    }
+
+    /**
+     * Returns an array of escape times for this line.
+     */
+    public int[] getIterations() {
+        final int[] iterations = new int[width];
+        getIterations(iterations, 0);
+        return iterations;
+    }
+
+    /**
+     * Decodes the escape times for this line into the given array, starting at the given offset.
+     */
+    public void getIterations(int[] destination, int offset) {
+        if (runLengthEncoded) {
+            decodeRunLength(data, bytesPerPixel, destination, offset);
+            return;
+        }
+        switch (bytesPerPixel) {
+            case 1:
+                for (int p = 0; p < width; p++) {
+                    destination[offset + p] = data[p] & 0xFF;
+                }
+                break;
+            case 2:
+                for (int p = 0, i = 0; p < width; p++, i += 2) {
+                    destination[offset + p] = (data[i] & 0xFF) | (data[i + 1] & 0xFF) << 8;
+                }
+                break;
+            default:
+                for (int p = 0, i = 0; p < width; p++) {
+                    int value = 0;
+                    for (int b = 0; b < bytesPerPixel; b++) {
+                        value |= (data[i++] & 0xFF) << (8 * b);
+                    }
+                    destination[offset + p] = value;
+                }
+        }
+    }
+
+    /**
+     * Decodes the fractions of the escape times for this line into the given array, starting at
+     * the given offset. If this line has no fractions, the fractions are all zero.
+     */
+    public void getFractions(int[] destination, int offset) {
+        if (fractionData == null) {
+            Arrays.fill(destination, offset, offset + width, 0);
+        } else if (fractionsRunLengthEncoded) {
+            decodeRunLength(fractionData, 1, destination, offset);
+        } else {
+            for (int p = 0; p < width; p++) {
+                destination[offset + p] = fractionData[p] & 0xFF;
+            }
+        }
+    }
+
+    /**
+     * Decodes the given run-length encoded values, escape times or fractions, filling runs
+     * directly into the destination array.
+     */
+    private void decodeRunLength(byte[] encoded, int bytesPerPixel, int[] destination, int offset) {
+        int i = 0;
+        int p = offset;
+        final int end = offset + width;
+        while (p < end) {
+            int control = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = encoded[i++];
+                control |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+
+            if ((control & 1) != 0) {
+                final int run = (control >>> 1) + MIN_RUN;
+                Arrays.fill(destination, p, p + run, getValue(encoded, i, bytesPerPixel));
+                i += bytesPerPixel;
+                p += run;
+            } else {
+                final int count = (control >>> 1) + 1;
+                for (int q = 0; q < count; q++, i += bytesPerPixel) {
+                    destination[p++] = getValue(encoded, i, bytesPerPixel);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the value stored at the given index in the given data array.
+     */
+    private static int getValue(byte[] data, int index, int bytesPerPixel) {
+        switch (bytesPerPixel) {
+            case 1:
+                return data[index] & 0xFF;
+            case 2:
+                return (data[index] & 0xFF) | (data[index + 1] & 0xFF) << 8;
+            default:
+                return (data[index] & 0xFF) | (data[index + 1] & 0xFF) << 8 | (data[index + 2] & 0xFF) << 16 | data[index + 3] << 24;
+        }
+    }
+
+    /**
+     * Replaces this line with its serialized form when serializing.
+     */
+    private Object writeReplace() {
+        return new SerializedForm(this);
+    }
+
+    /**
+     * Lines are always serialized using their serialized form, so this method is only called
+     * if the stream has been tampered with.
+     */
+    private void readObject(ObjectInputStream in) throws InvalidObjectException {
+        throw new InvalidObjectException("Serialized form required");
+    }
+
+    /**
+     * The serialized form of a line. Compared to default serialization, there are no field
+     * descriptors, and no separate object for the escape time array.
+     */
+    private static final class SerializedForm implements Externalizable {
+
+        private static final long serialVersionUID = 1L;
+
+        private static final int BYTES_PER_PIXEL_MASK = 0x0F;
+        private static final int FRACTIONS_RUN_LENGTH_ENCODED = 0x20;
+        private static final int HAS_FRACTIONS = 0x40;
+        private static final int RUN_LENGTH_ENCODED = 0x80;
+
+        private Line line;
+
+        /** Used when deserializing. */
+        public SerializedForm() { }
+
+        SerializedForm(Line line) {
+            this.line = line;
+        }
+
+        /**
+         * Writes the line. The header fields are usually small, and are written as varints.
+         * The number of bytes per pixel, the encodings, and whether there are any fractions,
+         * are combined into a single byte.
+         */
+        @Override
+        public void writeExternal(ObjectOutput out) throws IOException {
+            writeVarint(out, line.x);
+            writeVarint(out, line.y);
+            writeVarint(out, line.width);
+            writeVarint(out, line.step);
+            writeVarint(out, line.blockSize);
+            final boolean hasFractions = line.fractionData != null;
+            out.writeByte(line.bytesPerPixel | (line.runLengthEncoded ? RUN_LENGTH_ENCODED : 0) |
+                          (hasFractions ? HAS_FRACTIONS : 0) | (line.fractionsRunLengthEncoded ? FRACTIONS_RUN_LENGTH_ENCODED : 0));
+            writeVarint(out, line.data.length);
+            out.write(line.data);
+            if (hasFractions) {
+                writeVarint(out, line.fractionData.length);
+                out.write(line.fractionData);
+            }
+        }
+
+        @Override
+        public void readExternal(ObjectInput in) throws IOException {
+            final int x = readVarint(in);
+            final int y = readVarint(in);
+            final int width = readVarint(in);
+            final int step = readVarint(in);
+            final int blockSize = readVarint(in);
+            final int flags = in.readUnsignedByte();
+            final int bytesPerPixel = flags & BYTES_PER_PIXEL_MASK;
+            final boolean runLengthEncoded = (flags & RUN_LENGTH_ENCODED) != 0;
+            final boolean hasFractions = (flags & HAS_FRACTIONS) != 0;
+            final boolean fractionsRunLengthEncoded = (flags & FRACTIONS_RUN_LENGTH_ENCODED) != 0;
+            final int size = readVarint(in);
+            if (width < 0 || (bytesPerPixel != 1 && bytesPerPixel != 2 && bytesPerPixel != 4) || !isValidSize(size, width * bytesPerPixel, runLengthEncoded)) {
+                throw new InvalidObjectException("Invalid line: width " + width + ", bytes per pixel " + bytesPerPixel + ", size " + size);
+            }
+            final byte[] data = new byte[size];
+            in.readFully(data);
+
+            byte[] fractionData = null;
+            if (hasFractions) {
+                final int fractionSize = readVarint(in);
+                if (!isValidSize(fractionSize, width, fractionsRunLengthEncoded)) {
+                    throw new InvalidObjectException("Invalid line: width " + width + ", fraction size " + fractionSize);
+                }
+                fractionData = new byte[fractionSize];
+                in.readFully(fractionData);
+            }
+            line = new Line(x, y, width, step, blockSize, bytesPerPixel, runLengthEncoded, data, fractionsRunLengthEncoded, fractionData);
+        }
+
+        /**
+         * Returns {@code true} if the given size of encoded data is valid, given the size of the raw data.
+         * Run-length encoded data is only used if it is smaller than the raw data.
+         */
+        private static boolean isValidSize(int size, int rawSize, boolean runLengthEncoded) {
+            return runLengthEncoded ? size >= 0 && size < rawSize : size == rawSize;
+        }
+
+        private Object readResolve() {
+            return line;
+        }
+
+        private static void writeVarint(ObjectOutput out, int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                out.writeByte((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.writeByte(value);
+        }
+
+        private static int readVarint(ObjectInput in) throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                final int b = in.readUnsignedByte();
+                value |= (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new InvalidObjectException("Invalid varint");
+        }
     }
 }
@@ -0,0 +1,62 @@
+/*
+ * Copyright (C) 2019 Johan Dykstrom
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package se.dykstrom.jppf.mandel.pan;
+
+import java.util.EventObject;
+
+/**
+ * An event which indicates that the user has dragged the contents of a component.
+ *
+ * @author Johan Dykstrom
+ */
+public class PanEvent extends EventObject {
+
+    /** The horizontal distance in pixels, positive if the contents was dragged to the right. */
+    private final int dx;
+
+    /** The vertical distance in pixels, positive if the contents was dragged down. */
+    private final int dy;
+
+    /**
+     * Creates a new pan event with the given source and distance.
+     */
+    PanEvent(Object source, int dx, int dy) {
+        super(source);
+        this.dx = dx;
+        this.dy = dy;
+    }
+
+    @Override
+    public String toString() {
+        return PanEvent.class.getSimpleName() + "[PANNED," + dx + "," + dy + "] on " + source;
+    }
+
+    /**
+     * Returns the horizontal distance in pixels.
+     */
+    public int getDx() {
+        return dx;
+    }
+
+    /**
+     * Returns the vertical distance in pixels.
+     */
+    public int getDy() {
+        return dy;
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2019 Johan Dykstrom
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package se.dykstrom.jppf.mandel.pan;
+
+import java.util.EventListener;
+
+/**
+ * Interface to be implemented by classes interested in receiving {@link PanEvent}s.
+ *
+ * @author Johan Dykstrom
+ */
+public interface PanListener extends EventListener {
+
+    /**
+     * Called when the user releases the mouse after dragging.
+     *
+     * @param event The event that characterizes the total distance dragged.
+     */
+    void panned(PanEvent event);
+
+    /**
+     * Called repeatedly while the user is dragging. The default implementation does nothing.
+     *
+     * @param event The event that characterizes the distance dragged so far.
+     */
+    default void panning(PanEvent event) { }
+}
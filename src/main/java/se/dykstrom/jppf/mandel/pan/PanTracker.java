@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2019 Johan Dykstrom
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package se.dykstrom.jppf.mandel.pan;
+
+import javax.swing.*;
+import java.awt.Component;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class enables the user to pan the contents of the given component by dragging it with
+ * the right mouse button. While dragging, {@code PanEvent}s are sent to the {@code panning}
+ * method of all registered {@code PanListener}s, and when the user releases the mouse, a final
+ * {@code PanEvent} is sent to the {@code panned} method.
+ *
+ * @author Johan Dykstrom
+ * @see PanEvent
+ * @see PanListener
+ */
+public class PanTracker {
+
+    /** The component to track. */
+    private final Component component;
+
+    /** The list of registered event listeners. */
+    private final List<PanListener> listeners = new ArrayList<>();
+
+    public PanTracker(Component component) {
+        this.component = component;
+
+        // Add mouse event listeners to the component, so we can track mouse movement
+        MouseRecorder recorder = new MouseRecorder();
+        component.addMouseListener(recorder);
+        component.addMouseMotionListener(recorder);
+    }
+
+    /**
+     * Adds the specified listener to receive events from this component.
+     */
+    public void addPanListener(PanListener listener) {
+        synchronized (listeners) {
+            listeners.add(listener);
+        }
+    }
+
+    /**
+     * Removes the given listener so it will no longer receive any events from this component.
+     */
+    @SuppressWarnings("unused")
+    public void removePanListener(PanListener listener) {
+        synchronized (listeners) {
+            listeners.remove(listener);
+        }
+    }
+
+    /**
+     * Fires a {@link PanEvent} to all registered listeners.
+     */
+    private void firePanEvent(int dx, int dy, boolean finished) {
+        synchronized (listeners) {
+            for (PanListener listener : listeners) {
+                if (finished) {
+                    listener.panned(new PanEvent(component, dx, dy));
+                } else {
+                    listener.panning(new PanEvent(component, dx, dy));
+                }
+            }
+        }
+    }
+
+    /**
+     * Private helper class that records mouse movement.
+     *
+     * @author Johan Dykstrom
+     */
+    private class MouseRecorder extends MouseAdapter {
+
+        private int startX, startY;
+        private boolean dragging;
+
+        @Override
+        public void mousePressed(MouseEvent event) {
+            if (SwingUtilities.isRightMouseButton(event)) {
+                startX = event.getX();
+                startY = event.getY();
+                dragging = true;
+            }
+        }
+
+        @Override
+        public void mouseReleased(MouseEvent event) {
+            if (dragging && SwingUtilities.isRightMouseButton(event)) {
+                dragging = false;
+                firePanEvent(event.getX() - startX, event.getY() - startY, true);
+            }
+        }
+
+        @Override
+        public void mouseDragged(MouseEvent event) {
+            if (dragging) {
+                firePanEvent(event.getX() - startX, event.getY() - startY, false);
+            }
+        }
+    }
+}
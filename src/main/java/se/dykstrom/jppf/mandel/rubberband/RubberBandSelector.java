@@ -17,6 +17,7 @@
 
 package se.dykstrom.jppf.mandel.rubberband;
 
+import javax.swing.SwingUtilities;
 import java.awt.Color;
 import java.awt.Component;
 import java.awt.Graphics2D;
@@ -27,7 +28,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 /**
- * This class enables the user to select a rectangular area of the given component using the mouse.
+ * This class enables the user to select a rectangular area of the given component using the left mouse button.
  * A rubber band rectangle is drawn on top of the component to visualize the selected area. When
  * the user releases the mouse, a {@code RubberBandSelectionEvent} is fired to all registered
  * {@code RubberBandSelectionListener}s.
@@ -98,6 +99,10 @@ public class RubberBandSelector {
          */
         @Override
         public void mousePressed(MouseEvent event) {
+            if (!SwingUtilities.isLeftMouseButton(event)) {
+                return;
+            }
+
             startX = event.getX();
             startY = event.getY();
             lastX = startX;
@@ -115,6 +120,10 @@ public class RubberBandSelector {
          */
         @Override
         public void mouseReleased(MouseEvent event) {
+            if (!SwingUtilities.isLeftMouseButton(event)) {
+                return;
+            }
+
             Rectangle rectangle = toRectangle(startX, startY, lastX, lastY);
 
             Graphics2D g = (Graphics2D) component.getGraphics();
@@ -132,6 +141,10 @@ public class RubberBandSelector {
          */
         @Override
         public void mouseDragged(MouseEvent event) {
+            if (!SwingUtilities.isLeftMouseButton(event)) {
+                return;
+            }
+
             int x = event.getX();
             int y = event.getY();
 
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2019 Johan Dykstrom
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package se.dykstrom.jppf.mandel.task;
+
+import se.dykstrom.jppf.mandel.model.Coordinates;
+import se.dykstrom.jppf.mandel.model.ImageAttributes;
+
+/**
+ * An estimate of the cost of calculating each part of a rectangular area of the image. The area
+ * is divided into a grid of cells, and the cost of each cell is estimated by counting the
+ * iterations needed to calculate the pixel in the center of the cell. The costs are stored as
+ * a summed-area table, so the cost of any rectangle of cells can be looked up in constant time.
+ *
+ * @author Johan Dykstrom
+ */
+class CostMap {
+
+    /** The number of cells per tile in each direction, to allow the tile borders to be placed with some precision. */
+    private static final int CELLS_PER_TILE = 4;
+
+    /** The minimum width and height of a cell in pixels. */
+    private static final int MIN_CELL_SIZE = 8;
+
+    /** The estimated cost of a pixel, in iterations, not counting the iterations themselves. */
+    private static final int PIXEL_COST = 8;
+
+    private final int areaX;
+    private final int areaY;
+    private final int width;
+    private final int height;
+    private final int columns;
+    private final int rows;
+
+    /** The summed-area table, where element (c, r) is the total cost of the cells above and to the left of (c, r). */
+    private final double[] sums;
+
+    private CostMap(int areaX, int areaY, int width, int height, int columns, int rows, double[] sums) {
+        this.areaX = areaX;
+        this.areaY = areaY;
+        this.width = width;
+        this.height = height;
+        this.columns = columns;
+        this.rows = rows;
+        this.sums = sums;
+    }
+
+    /**
+     * Estimates the cost of calculating the given area of the image.
+     *
+     * @param areaX The x-coordinate of the top-left corner of the area.
+     * @param areaY The y-coordinate of the top-left corner of the area.
+     * @param width The width of the area in pixels.
+     * @param height The height of the area in pixels.
+     * @param tileSize The nominal size of the tiles the area will be divided into.
+     * @param imageAttributes The image attributes of the entire image.
+     * @return The estimated cost of the area.
+     */
+    static CostMap probe(int areaX, int areaY, int width, int height, int tileSize, ImageAttributes imageAttributes) {
+        final int columns = cells(width, tileSize);
+        final int rows = cells(height, tileSize);
+        final Coordinates coordinates = imageAttributes.getCoordinates();
+        final double scale = imageAttributes.getScale();
+        final int maxIterations = imageAttributes.getMaxIterations();
+
+        final CostMap map = new CostMap(areaX, areaY, width, height, columns, rows, new double[(columns + 1) * (rows + 1)]);
+        for (int row = 0; row < rows; row++) {
+            final int y0 = map.getY(row);
+            final int y1 = map.getY(row + 1);
+            final double y = coordinates.getMinY() + (y0 + y1) / 2.0 * scale;
+            double rowSum = 0;
+            for (int column = 0; column < columns; column++) {
+                final int x0 = map.getX(column);
+                final int x1 = map.getX(column + 1);
+                final double x = coordinates.getMinX() + (x0 + x1) / 2.0 * scale;
+                final long pixels = (long) (x1 - x0) * (y1 - y0);
+                rowSum += pixels * (double) (ScalarKernel.calcCost(x, y, maxIterations) + PIXEL_COST);
+                map.sums[map.index(column + 1, row + 1)] = map.sums[map.index(column + 1, row)] + rowSum;
+            }
+        }
+        return map;
+    }
+
+    /**
+     * Returns the number of cells to use along a side of the area with the given length.
+     */
+    private static int cells(int length, int tileSize) {
+        final int tiles = (length + tileSize - 1) / tileSize;
+        return Math.max(1, Math.min(tiles * CELLS_PER_TILE, length / MIN_CELL_SIZE));
+    }
+
+    private int index(int column, int row) {
+        return row * (columns + 1) + column;
+    }
+
+    int getColumns() {
+        return columns;
+    }
+
+    int getRows() {
+        return rows;
+    }
+
+    /**
+     * Returns the x-coordinate of the left edge of the given column, relative to the image.
+     * Column {@link #getColumns()} is the right edge of the area.
+     */
+    int getX(int column) {
+        return areaX + (int) ((long) column * width / columns);
+    }
+
+    /**
+     * Returns the y-coordinate of the top edge of the given row, relative to the image.
+     * Row {@link #getRows()} is the bottom edge of the area.
+     */
+    int getY(int row) {
+        return areaY + (int) ((long) row * height / rows);
+    }
+
+    /**
+     * Returns the estimated cost of the cells from (column0, row0), inclusive, to (column1, row1), exclusive.
+     */
+    double getCost(int column0, int row0, int column1, int row1) {
+        return sums[index(column1, row1)] - sums[index(column0, row1)] - sums[index(column1, row0)] + sums[index(column0, row0)];
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright (C) 2019 Johan Dykstrom
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package se.dykstrom.jppf.mandel.task;
+
+/**
+ * Calculates the "escape time" for all points on a line in the image, and the fraction of
+ * each escape time, used for smooth coloring. All implementations must return exactly the
+ * same results as {@link ScalarKernel}.
+ *
+ * @author Johan Dykstrom
+ */
+public interface EscapeTimeKernel {
+
+    /**
+     * Calculates the escape times for {@code iterations.length} consecutive points on a line,
+     * starting at pixel {@code firstX}. Point number {@code i} has the coordinates
+     * ({@code minX + (firstX + i) * scale}, {@code y0}). Calculating the coordinates from the
+     * pixel number relative to the image, and not relative to the first point, makes sure that
+     * a pixel gets the same coordinates regardless of how the image is divided.
+     *
+     * @param minX The X coordinate of the left edge of the image.
+     * @param y0 The Y coordinate of all points.
+     * @param scale The distance between two pixels.
+     * @param firstX The pixel number of the first point.
+     * @param maxIterations The maximum number of iterations.
+     * @param iterations The array in which to store the escape times.
+     * @param fractions The array in which to store the fractions of the escape times.
+     * @return The number of iterations actually performed.
+     */
+    default long calcLine(double minX, double y0, double scale, int firstX, int maxIterations, int[] iterations, int[] fractions) {
+        return calcLine(minX, y0, scale, firstX, 1, maxIterations, iterations, fractions);
+    }
+
+    /**
+     * Calculates the escape times for {@code iterations.length} points on a line, sampling every
+     * {@code step}th pixel, starting at pixel {@code firstX}. Point number {@code i} has the
+     * coordinates ({@code minX + (firstX + i * step) * scale}, {@code y0}), so a pixel gets
+     * the same coordinates regardless of the step used to sample it.
+     *
+     * @param minX The X coordinate of the left edge of the image.
+     * @param y0 The Y coordinate of all points.
+     * @param scale The distance between two pixels.
+     * @param firstX The pixel number of the first point.
+     * @param step The distance in pixels between two points.
+     * @param maxIterations The maximum number of iterations.
+     * @param iterations The array in which to store the escape times.
+     * @param fractions The array in which to store the fractions of the escape times, in units of
+     *                  1 / {@link se.dykstrom.jppf.mandel.model.Line#FRACTION_SCALE} of an iteration.
+     * @return The number of iterations actually performed, not counting points that were found
+     *         to belong to the set without iterating, or iterations skipped by periodicity checking.
+     */
+    long calcLine(double minX, double y0, double scale, int firstX, int step, int maxIterations, int[] iterations, int[] fractions);
+}
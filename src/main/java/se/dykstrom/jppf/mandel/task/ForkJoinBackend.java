@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2019 Johan Dykstrom
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package se.dykstrom.jppf.mandel.task;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.dykstrom.jppf.mandel.metrics.GridMetrics;
+import se.dykstrom.jppf.mandel.model.Line;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * A render backend that calculates the tiles in the local JVM, using a fork/join pool with one
+ * thread per core. The tasks are run directly, without creating JPPF jobs, and the results are
+ * passed to the consumer without being serialized.
+ *
+ * @author Johan Dykstrom
+ */
+public class ForkJoinBackend implements RenderBackend {
+
+    private final Logger logger = LoggerFactory.getLogger(ForkJoinBackend.class);
+
+    private final AtomicInteger jobId = new AtomicInteger(0);
+
+    private final AtomicInteger taskId = new AtomicInteger(0);
+
+    /** Incremented each time the active tasks are cancelled. */
+    private final AtomicInteger cancelCount = new AtomicInteger(0);
+
+    /** The tasks that have been submitted, but not yet completed, mapped to the tile tasks they run. */
+    private final Map<ForkJoinTask<?>, TileTask> activeTasks = new ConcurrentHashMap<>();
+
+    private final ForkJoinPool pool;
+
+    /** Collects the metrics of the calculated tasks. */
+    private final GridMetrics metrics;
+
+    public ForkJoinBackend() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public ForkJoinBackend(int parallelism) {
+        this(parallelism, new GridMetrics());
+    }
+
+    /**
+     * Creates a new fork/join backend, that records the metrics of all tasks in the given
+     * metrics object. The metrics object is closed when the backend is closed.
+     */
+    public ForkJoinBackend(int parallelism, GridMetrics metrics) {
+        this.metrics = metrics;
+        pool = new ForkJoinPool(parallelism);
+        logger.info("Created fork/join backend with parallelism {}", parallelism);
+    }
+
+    @Override
+    public void render(List<Parameters> parametersList, BiConsumer<Parameters, List<Line>> consumer) throws Exception {
+        // remember the cancel count, to detect if the tasks are cancelled while they are being submitted
+        final int expectedCancelCount = cancelCount.get();
+
+        final String jobName = "local-job-" + jobId.getAndIncrement();
+        final long submitMillis = System.currentTimeMillis();
+        metrics.startJob(jobName);
+        final Map<ForkJoinTask<?>, TileTask> tasks = new LinkedHashMap<>();
+        try {
+            for (final Parameters parameters : parametersList) {
+                final TileTask tileTask = TileTask.create("local-task-" + taskId.getAndIncrement(), parameters);
+                final ForkJoinTask<?> task = pool.submit(() -> {
+                    tileTask.run();
+                    final long returnMillis = System.currentTimeMillis();
+                    consumer.accept(parameters, tileTask.getResult());
+                    // Record the metrics after delivering the result, so metrics never affect rendering
+                    metrics.record(jobName, tileTask.getMetrics(), submitMillis, returnMillis);
+                });
+                tasks.put(task, tileTask);
+                activeTasks.put(task, tileTask);
+            }
+            if (cancelCount.get() != expectedCancelCount) {
+                // the tasks were cancelled before they were made active
+                tasks.forEach(ForkJoinBackend::cancel);
+            }
+
+            // wait until the tasks are finished
+            for (final ForkJoinTask<?> task : tasks.keySet()) {
+                try {
+                    task.get();
+                } catch (ExecutionException e) {
+                    throw (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+                }
+            }
+        } catch (CancellationException e) {
+            tasks.forEach(ForkJoinBackend::cancel);
+            throw e;
+        } finally {
+            tasks.keySet().forEach(activeTasks::remove);
+            metrics.completeJob(jobName);
+        }
+    }
+
+    @Override
+    public void cancel() {
+        cancelCount.incrementAndGet();
+        activeTasks.forEach(ForkJoinBackend::cancel);
+    }
+
+    /**
+     * Cancels the given task. Tasks that have not started are removed from the pool, and
+     * tasks that are running stop calculating at the next line, see {@link TileTask#onCancel()}.
+     */
+    private static void cancel(ForkJoinTask<?> task, TileTask tileTask) {
+        tileTask.onCancel();
+        task.cancel(false);
+    }
+
+    @Override
+    public void close() {
+        logger.info("Closing fork/join backend...");
+        pool.shutdownNow();
+        metrics.close();
+        logger.info("Closing fork/join backend... done");
+    }
+
+    @Override
+    public int getParallelism() {
+        return pool.getParallelism();
+    }
+
+    @Override
+    public String toString() {
+        return "fork/join backend with parallelism " + pool.getParallelism();
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2019 Johan Dykstrom
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package se.dykstrom.jppf.mandel.task;
+
+import org.jppf.client.JPPFClient;
+import org.jppf.client.monitoring.topology.TopologyEvent;
+import org.jppf.client.monitoring.topology.TopologyListenerAdapter;
+import org.jppf.client.monitoring.topology.TopologyManager;
+import org.jppf.client.monitoring.topology.TopologyNode;
+import org.jppf.client.monitoring.topology.TopologyNodeStatus;
+import org.jppf.management.JPPFNodeState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps track of the nodes connected to the JPPF drivers of a client, and of the total number
+ * of processing threads in those nodes. The topology is discovered using the JPPF management
+ * API, and is updated when nodes join or leave the grid, or change their number of threads.
+ *
+ * @author Johan Dykstrom
+ */
+class GridTopology extends TopologyListenerAdapter implements AutoCloseable {
+
+    private final Logger logger = LoggerFactory.getLogger(GridTopology.class);
+
+    private final TopologyManager topologyManager;
+
+    private volatile int nodeCount;
+
+    private volatile int threadCount;
+
+    /**
+     * Creates a new grid topology, that monitors the drivers the given client is connected to.
+     *
+     * @param jppfClient The JPPF client.
+     */
+    GridTopology(JPPFClient jppfClient) {
+        this.topologyManager = new TopologyManager(jppfClient);
+        update();
+        topologyManager.addTopologyListener(this);
+    }
+
+    /**
+     * Returns the number of active nodes in the grid.
+     */
+    int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Returns the total number of processing threads in all active nodes. The thread pool size
+     * of a node that has not yet reported its state is assumed to be one.
+     */
+    int getThreadCount() {
+        return threadCount;
+    }
+
+    @Override
+    public void nodeAdded(TopologyEvent event) {
+        update();
+    }
+
+    @Override
+    public void nodeRemoved(TopologyEvent event) {
+        update();
+    }
+
+    @Override
+    public void nodeUpdated(TopologyEvent event) {
+        update();
+    }
+
+    @Override
+    public void driverRemoved(TopologyEvent event) {
+        update();
+    }
+
+    /**
+     * Counts the nodes and threads in the current topology. Peer drivers, and nodes that are
+     * down, are not counted.
+     */
+    private synchronized void update() {
+        int nodes = 0;
+        int threads = 0;
+        for (TopologyNode node : topologyManager.getNodes()) {
+            if (node.isNode() && node.getStatus() == TopologyNodeStatus.UP) {
+                final JPPFNodeState state = node.getNodeState();
+                nodes++;
+                threads += (state != null) ? Math.max(1, state.getThreadPoolSize()) : 1;
+            }
+        }
+
+        if (nodes != nodeCount || threads != threadCount) {
+            logger.info("Grid topology changed: {} nodes with {} processing threads", nodes, threads);
+        }
+        nodeCount = nodes;
+        threadCount = threads;
+    }
+
+    @Override
+    public void close() {
+        topologyManager.removeTopologyListener(this);
+        topologyManager.close();
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2019 Johan Dykstrom
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package se.dykstrom.jppf.mandel.task;
+
+import se.dykstrom.jppf.mandel.model.Coordinates;
+import se.dykstrom.jppf.mandel.model.ImageAttributes;
+
+import java.util.Arrays;
+
+import static se.dykstrom.jppf.mandel.model.ImageAttributes.MAX_ITERATIONS;
+import static se.dykstrom.jppf.mandel.model.ImageAttributes.MIN_ITERATIONS;
+
+/**
+ * Estimates the maximum number of iterations an image needs by calculating a coarse, low
+ * resolution version of the image locally. The probe uses a generous iteration limit, and
+ * looks at how many iterations the escaping points actually needed.
+ *
+ * @author Johan Dykstrom
+ */
+public final class IterationProbe {
+
+    /** The number of samples in each direction. */
+    private static final int SAMPLES = 32;
+
+    /** The iteration limit of the probe, relative to the scale based limit. */
+    private static final int PROBE_FACTOR = 4;
+
+    /** The percentile of the escape times used to calculate the result. */
+    private static final double PERCENTILE = 0.99;
+
+    /** The margin added on top of the percentile, to account for details between the samples. */
+    private static final int MARGIN_FACTOR = 2;
+
+    private IterationProbe() { }
+
+    /**
+     * Returns the maximum number of iterations to use when calculating the image defined by
+     * the given image attributes and size.
+     *
+     * @param imageAttributes The image attributes that defines the image.
+     * @param width The width of the image in pixels.
+     * @param height The height of the image in pixels.
+     * @return The estimated maximum number of iterations.
+     */
+    public static int probe(ImageAttributes imageAttributes, int width, int height) {
+        final Coordinates coordinates = imageAttributes.getCoordinates();
+        final double scale = imageAttributes.getScale();
+        if (imageAttributes.isDeepZoom()) {
+            // The probe samples are calculated in double precision, and would all be the same
+            return ImageAttributes.iterationsForScale(scale);
+        }
+        final int probeIterations = (int) Math.min(MAX_ITERATIONS, (long) PROBE_FACTOR * ImageAttributes.iterationsForScale(scale));
+
+        final int[] escapeTimes = new int[SAMPLES * SAMPLES];
+        int escaped = 0;
+        for (int j = 0; j < SAMPLES; j++) {
+            final double y0 = coordinates.getMinY() + (j + 0.5) * height / SAMPLES * scale;
+            for (int i = 0; i < SAMPLES; i++) {
+                final double x0 = coordinates.getMinX() + (i + 0.5) * width / SAMPLES * scale;
+                final int iterations = ScalarKernel.calcPoint(x0, y0, probeIterations);
+                if (iterations < probeIterations) {
+                    escapeTimes[escaped++] = iterations;
+                }
+            }
+        }
+
+        if (escaped == 0) {
+            // No sample escaped within the probe limit. The image may be all interior, but it may
+            // also be a deep view where the escape times exceed the probe limit, so do not lower it
+            return probeIterations;
+        }
+
+        Arrays.sort(escapeTimes, 0, escaped);
+        final int percentile = escapeTimes[(int) ((escaped - 1) * PERCENTILE)];
+        return Math.max(MIN_ITERATIONS, Math.min(probeIterations, MARGIN_FACTOR * percentile));
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2019 Johan Dykstrom
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package se.dykstrom.jppf.mandel.task;
+
+/**
+ * Creates {@link EscapeTimeKernel} objects. The vectorized kernel is used if it is available,
+ * otherwise the scalar kernel. The vectorized kernel requires Java 16 or later, and the incubator
+ * module "jdk.incubator.vector" to be added to the JVM using
+ * {@code --add-modules jdk.incubator.vector}. It can be disabled by setting the system
+ * property "mandel.kernel" to "scalar".
+ *
+ * @author Johan Dykstrom
+ */
+public final class Kernels {
+
+    private static final String VECTOR_KERNEL_CLASS = "se.dykstrom.jppf.mandel.task.VectorKernel";
+
+    private Kernels() { }
+
+    /**
+     * Returns the best kernel available in this JVM.
+     */
+    public static EscapeTimeKernel getKernel() {
+        if ("scalar".equals(System.getProperty("mandel.kernel"))) {
+            return getScalarKernel();
+        }
+        final EscapeTimeKernel vectorKernel = getVectorKernel();
+        return (vectorKernel != null) ? vectorKernel : getScalarKernel();
+    }
+
+    /**
+     * Returns the scalar kernel.
+     */
+    public static EscapeTimeKernel getScalarKernel() {
+        return new ScalarKernel();
+    }
+
+    /**
+     * Returns the vectorized kernel, or {@code null} if it is not available in this JVM.
+     */
+    public static EscapeTimeKernel getVectorKernel() {
+        try {
+            return (EscapeTimeKernel) Class.forName(VECTOR_KERNEL_CLASS).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            // The kernel was not compiled, or the Vector API is not available
+            return null;
+        }
+    }
+}
@@ -17,109 +17,93 @@
 
 package se.dykstrom.jppf.mandel.task;
 
-import org.jppf.node.protocol.AbstractTask;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import se.dykstrom.jppf.mandel.model.Coordinates;
 import se.dykstrom.jppf.mandel.model.Line;
 
-import java.awt.*;
 import java.util.ArrayList;
 import java.util.List;
 
 /**
- * A JPPF task that calculates lines for a specific parameters object. This task may be
- * executed on a remote JPPF node.
+ * A JPPF task that calculates the lines of one tile, as defined by a parameters object.
+ * This task may be executed on a remote JPPF node.
  */
-public class LineTask extends AbstractTask<List<Line>> {
+public class LineTask extends TileTask {
 
     private static final long serialVersionUID = 1L;
 
-    private static final int NUM_ITERATIONS = 100;
+    /** The kernel used to calculate the escape times. */
+    private static final EscapeTimeKernel KERNEL = Kernels.getKernel();
 
-    /** The RGB colors to use when drawing the image. */
-    private static final int[] COLORS = new int[256 * 2];
-
-    /** The factor used to convert the "escape time" value to an RGB color. */
-    private static final double FACTOR = (double) (COLORS.length - 1) / NUM_ITERATIONS;
-
-    static {
-        int index = 0;
-        for (int red = 0; red < 256; red++) {
-            COLORS[index++] = (new Color(red, 0, 0)).getRGB();
-        }
-        for (int green = 0; green < 256; green++) {
-            COLORS[index++] = (new Color(255, green, 0)).getRGB();
-        }
-    }
-
-    private final Logger logger = LoggerFactory.getLogger(LineTask.class);
-
-    private final String name;
-    private final Parameters parameters;
+    /** Static, since an instance field would be serialized with every task. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(LineTask.class);
 
     public LineTask(String name, Parameters parameters) {
-        this.name = name;
-        this.parameters = parameters;
+        super(name, parameters);
     }
 
     @Override
-    public void run() {
-        logger.debug("Running task {}...", name);
-        setResult(calcLines());
-        logger.debug("Running task {}... done", name);
-    }
-
-    private List<Line> calcLines() {
-        logger.info("Calculating lines from parameters {}", parameters);
+    protected List<Line> calcLines() {
+        LOGGER.info("Calculating lines from parameters {} with kernel {}", parameters, KERNEL.getClass().getSimpleName());
+        final int stride = parameters.getStride();
+        final int endY = parameters.getY() + parameters.getHeight();
         List<Line> lines = new ArrayList<>();
-        for (int y = 0; y < parameters.getHeight(); y++) {
-            lines.add(calcLine(y));
+        for (int imageY = firstMultiple(parameters.getY(), stride, 0); imageY < endY; imageY += stride) {
+            checkCancelled();
+            if (parameters.isRefinement() && imageY % (2 * stride) == 0) {
+                // Skip the pixels calculated by the previous pass, on every other line
+                addLine(lines, imageY, firstMultiple(parameters.getX(), 2 * stride, stride), 2 * stride);
+            } else {
+                addLine(lines, imageY, firstMultiple(parameters.getX(), stride, 0), stride);
+            }
         }
         return lines;
     }
 
     /**
-     * Calculates a single line.
-     *
-     * @param y The line number of the line to calculate.
-     * @return The calculated line.
+     * Returns the first pixel number, equal to or greater than {@code start}, that is
+     * {@code offset} more than a multiple of {@code step}.
      */
-    private Line calcLine(int y) {
-        Coordinates coordinates = parameters.getImageAttributes().getCoordinates();
-        double scale = parameters.getImageAttributes().getScale();
-
-        final int[] rgb = new int[parameters.getWidth()];
-        for (int x = 0; x < rgb.length; x++) {
-            int escapeTime = NUM_ITERATIONS - calcPoint(coordinates.getMinX() + x * scale, coordinates.getMinY() + y * scale);
-            rgb[x] = COLORS[(int) (escapeTime * FACTOR)];
-        }
-        return new Line(y + parameters.getFirstY(), rgb);
+    private static int firstMultiple(int start, int step, int offset) {
+        return start + Math.floorMod(offset - start, step);
     }
 
     /**
-     * Returns the "escape time" for the given point, that is, the number of iterations it takes
-     * before the point reaches the escape condition. A point that does not reach the escape
-     * condition within "the maximum number of iterations" is said to belong to the Mandelbrot set.
-     * See also <a href="http://en.wikipedia.org/wiki/Mandelbrot_set">Wikipedia</a>.
+     * Calculates a single line of the tile, and adds it to the list of lines, if it is not empty.
      *
-     * @param x0 The X start value.
-     * @param y0 The Y start value.
-     * @return The "escape time" of the given point.
+     * @param lines The list of lines to add the line to.
+     * @param imageY The line number of the line to calculate, relative to the image.
+     * @param firstX The pixel number of the first pixel to calculate, relative to the image.
+     * @param step The distance in pixels between two calculated pixels.
      */
-    private int calcPoint(double x0, double y0) {
-        double x = x0;
-        double y = y0;
-
-        int iteration = 0;
-
-        while ((x * x + y * y <= (2 * 2)) && (iteration < NUM_ITERATIONS)) {
-            double tempX = x * x - y * y + x0;
-            y = 2 * x * y + y0;
-            x = tempX;
-            iteration++;
+    private void addLine(List<Line> lines, int imageY, int firstX, int step) {
+        int maxIterations = parameters.getMaxIterations();
+        int endX = parameters.getX() + parameters.getWidth();
+        if (firstX >= endX) {
+            return;
         }
 
-        return iteration;
+        final int[] iterations = new int[(endX - firstX + step - 1) / step];
+        final int[] fractions = new int[iterations.length];
+        addIterations(calcLine(imageY, firstX, step, iterations, fractions));
+        lines.add(new Line(firstX, imageY, step, parameters.getStride(), iterations, fractions, maxIterations));
+    }
+
+    /**
+     * Calculates the escape times of the pixels on one line of the image, starting at pixel
+     * {@code firstX}, and continuing with every {@code step}th pixel, until the array is full.
+     *
+     * @param imageY The line number of the line to calculate, relative to the image.
+     * @param firstX The pixel number of the first pixel to calculate, relative to the image.
+     * @param step The distance in pixels between two calculated pixels.
+     * @param iterations The array to store the escape times in.
+     * @param fractions The array to store the fractions of the escape times in.
+     * @return The number of iterations performed.
+     */
+    protected long calcLine(int imageY, int firstX, int step, int[] iterations, int[] fractions) {
+        Coordinates coordinates = parameters.getImageAttributes().getCoordinates();
+        double scale = parameters.getImageAttributes().getScale();
+        return KERNEL.calcLine(coordinates.getMinX(), coordinates.getMinY() + imageY * scale, scale, firstX, step, parameters.getMaxIterations(), iterations, fractions);
     }
 }
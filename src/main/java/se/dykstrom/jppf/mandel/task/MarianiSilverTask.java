@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2019 Johan Dykstrom
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package se.dykstrom.jppf.mandel.task;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.dykstrom.jppf.mandel.model.Coordinates;
+import se.dykstrom.jppf.mandel.model.Line;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A JPPF task that calculates the lines of one tile using the Mariani-Silver algorithm.
+ * The algorithm calculates the border of a rectangle, starting with the entire tile. If all
+ * pixels on the border have the same escape time, the rectangle is filled with that escape
+ * time. Otherwise, the rectangle is divided into two halves that share the dividing line,
+ * and the algorithm is applied recursively to each half. Small rectangles are calculated
+ * pixel by pixel.
+ * <p>
+ * Since the Mandelbrot set is connected, this gives the same result as {@link LineTask} for
+ * most images, while calculating only a fraction of the pixels. Details that are thinner than
+ * a pixel, and do not touch the border of the rectangle, may however be lost. The fractions of
+ * the escape times vary within a filled rectangle, but are filled with the fraction of its
+ * top-left corner, so smooth coloring is only approximate in filled rectangles outside the set.
+ *
+ * @author Johan Dykstrom
+ */
+public class MarianiSilverTask extends TileTask {
+
+    private static final long serialVersionUID = 1L;
+
+    /** Rectangles with a width and height less than this are calculated pixel by pixel. */
+    private static final int MIN_SIZE = 6;
+
+    /** Marks a pixel that has not been calculated yet. */
+    private static final int UNKNOWN = -1;
+
+    /** Static, since an instance field would be serialized with every task. */
+    private static final Logger LOGGER = LoggerFactory.getLogger(MarianiSilverTask.class);
+
+    /** The escape times of the tile, in row-major order. */
+    private transient int[] field;
+
+    /** The fractions of the escape times of the tile, in row-major order. */
+    private transient int[] fractions;
+
+    /** The number of pixels actually calculated. */
+    private transient int calculated;
+
+    public MarianiSilverTask(String name, Parameters parameters) {
+        super(name, parameters);
+    }
+
+    @Override
+    protected List<Line> calcLines() {
+        LOGGER.info("Calculating lines from parameters {}", parameters);
+        final int width = parameters.getWidth();
+        final int height = parameters.getHeight();
+
+        field = new int[width * height];
+        fractions = new int[width * height];
+        Arrays.fill(field, UNKNOWN);
+        calculated = 0;
+        subdivide(0, 0, width - 1, height - 1);
+        LOGGER.debug("Calculated {} of {} pixels", calculated, field.length);
+
+        List<Line> lines = new ArrayList<>();
+        for (int y = 0; y < height; y++) {
+            int[] iterations = Arrays.copyOfRange(field, y * width, (y + 1) * width);
+            int[] lineFractions = Arrays.copyOfRange(fractions, y * width, (y + 1) * width);
+            lines.add(new Line(parameters.getX(), parameters.getY() + y, iterations, lineFractions, parameters.getMaxIterations()));
+        }
+        field = null;
+        fractions = null;
+        return lines;
+    }
+
+    /**
+     * Calculates the rectangle with upper left corner (x1, y1) and lower right corner (x2, y2),
+     * both inclusive, and in pixels relative to the tile.
+     */
+    private void subdivide(int x1, int y1, int x2, int y2) {
+        checkCancelled();
+        // Calculate the border, and check if it is uniform
+        final int value = calcPixel(x1, y1);
+        boolean uniform = true;
+        for (int x = x1; x <= x2; x++) {
+            uniform &= (calcPixel(x, y1) == value);
+            uniform &= (calcPixel(x, y2) == value);
+        }
+        for (int y = y1 + 1; y < y2; y++) {
+            uniform &= (calcPixel(x1, y) == value);
+            uniform &= (calcPixel(x2, y) == value);
+        }
+
+        if (x2 - x1 < 2 || y2 - y1 < 2) {
+            // There are no pixels inside the border
+            return;
+        }
+
+        final int width = parameters.getWidth();
+        if (uniform) {
+            final int fraction = fractions[y1 * width + x1];
+            for (int y = y1 + 1; y < y2; y++) {
+                Arrays.fill(field, y * width + x1 + 1, y * width + x2, value);
+                Arrays.fill(fractions, y * width + x1 + 1, y * width + x2, fraction);
+            }
+        } else if (x2 - x1 < MIN_SIZE && y2 - y1 < MIN_SIZE) {
+            for (int y = y1 + 1; y < y2; y++) {
+                for (int x = x1 + 1; x < x2; x++) {
+                    calcPixel(x, y);
+                }
+            }
+        } else if (x2 - x1 >= y2 - y1) {
+            final int middle = (x1 + x2) / 2;
+            subdivide(x1, y1, middle, y2);
+            subdivide(middle, y1, x2, y2);
+        } else {
+            final int middle = (y1 + y2) / 2;
+            subdivide(x1, y1, x2, middle);
+            subdivide(x1, middle, x2, y2);
+        }
+    }
+
+    /**
+     * Returns the escape time of the given pixel, relative to the tile, calculating it if needed.
+     */
+    private int calcPixel(int x, int y) {
+        final int index = y * parameters.getWidth() + x;
+        if (field[index] == UNKNOWN) {
+            final Coordinates coordinates = parameters.getImageAttributes().getCoordinates();
+            final double scale = parameters.getImageAttributes().getScale();
+            final double x0 = coordinates.getMinX() + (parameters.getX() + x) * scale;
+            final double y0 = coordinates.getMinY() + (parameters.getY() + y) * scale;
+            final int result = ScalarKernel.iterate(x0, y0, parameters.getMaxIterations());
+            field[index] = ScalarKernel.escapeTime(result, parameters.getMaxIterations());
+            fractions[index] = ScalarKernel.fraction(result);
+            addIterations(ScalarKernel.performedIterations(result));
+            calculated++;
+        }
+        return field[index];
+    }
+}
@@ -20,28 +20,70 @@ package se.dykstrom.jppf.mandel.task;
 import se.dykstrom.jppf.mandel.model.ImageAttributes;
 
 import java.io.Serializable;
+import java.util.Objects;
 
 /**
- * Contains parameters for calculating one segment of the image, including the y-coordinate for the
- * first pixel line in the segment, the width and height of the segment in pixels, and the image
- * attributes that defines coordinates and scale.
+ * Contains parameters for calculating one rectangular tile of the image, including the x- and
+ * y-coordinates for the upper left pixel of the tile, the width and height of the tile in pixels,
+ * the image attributes that defines coordinates and scale of the entire image, and the mode
+ * used to render the tile.
+ * <p>
+ * When rendering the image in several passes, the stride defines which pixels to calculate in
+ * this pass: only pixels whose x- and y-coordinates, relative to the image, are multiples of the
+ * stride. In a refinement pass, pixels that were calculated by the previous pass, with twice the
+ * stride, are skipped. Strides only apply to the exhaustive render mode.
  */
 public class Parameters implements Serializable {
 
-    private final int firstY;
+    private final int x;
+    private final int y;
     private final int width;
     private final int height;
     private final ImageAttributes imageAttributes;
+    private final RenderMode renderMode;
+    private final int stride;
+    private final boolean refinement;
 
-    public Parameters(int firstY, int width, int height, ImageAttributes imageAttributes) {
-        this.firstY = firstY;
+    /**
+     * The reference orbit used in render mode {@link RenderMode#PERTURBATION}. The reference
+     * orbit is shared by all tiles in an image, and is sent to the grid once per job, and not
+     * once per task, see {@link ReferenceOrbit#DATA_PROVIDER_KEY}.
+     */
+    private final transient ReferenceOrbit referenceOrbit;
+
+    public Parameters(int x, int y, int width, int height, ImageAttributes imageAttributes) {
+        this(x, y, width, height, imageAttributes, RenderMode.EXHAUSTIVE);
+    }
+
+    public Parameters(int x, int y, int width, int height, ImageAttributes imageAttributes, RenderMode renderMode) {
+        this(x, y, width, height, imageAttributes, renderMode, 1, false, null);
+    }
+
+    private Parameters(int x, int y, int width, int height, ImageAttributes imageAttributes, RenderMode renderMode,
+                       int stride, boolean refinement, ReferenceOrbit referenceOrbit) {
+        this.x = x;
+        this.y = y;
         this.width = width;
         this.height = height;
         this.imageAttributes = imageAttributes;
+        this.renderMode = renderMode;
+        this.stride = stride;
+        this.refinement = refinement;
+        this.referenceOrbit = referenceOrbit;
+    }
+
+    /**
+     * Returns the x-coordinate of the upper left pixel of the tile.
+     */
+    public int getX() {
+        return x;
     }
 
-    public int getFirstY() {
-        return firstY;
+    /**
+     * Returns the y-coordinate of the upper left pixel of the tile.
+     */
+    public int getY() {
+        return y;
     }
 
     public int getWidth() {
@@ -56,8 +98,77 @@ public class Parameters implements Serializable {
         return imageAttributes;
     }
 
+    /**
+     * Returns the maximum number of iterations used to calculate each point.
+     */
+    public int getMaxIterations() {
+        return imageAttributes.getMaxIterations();
+    }
+
+    public RenderMode getRenderMode() {
+        return renderMode;
+    }
+
+    /**
+     * Returns the distance in pixels between two calculated pixels.
+     */
+    public int getStride() {
+        return stride;
+    }
+
+    /**
+     * Returns {@code true} if the pixels calculated with twice the stride should be skipped.
+     */
+    public boolean isRefinement() {
+        return refinement;
+    }
+
+    /**
+     * Returns the reference orbit used in render mode {@link RenderMode#PERTURBATION}, or
+     * {@code null} if there is no reference orbit, or if this object has been sent to the grid.
+     */
+    public ReferenceOrbit getReferenceOrbit() {
+        return referenceOrbit;
+    }
+
+    public Parameters withImageAttributes(ImageAttributes imageAttributes) {
+        return new Parameters(x, y, width, height, imageAttributes, renderMode, stride, refinement, referenceOrbit);
+    }
+
+    public Parameters withRenderMode(RenderMode renderMode) {
+        return new Parameters(x, y, width, height, imageAttributes, renderMode, stride, refinement, referenceOrbit);
+    }
+
+    public Parameters withStride(int stride, boolean refinement) {
+        return new Parameters(x, y, width, height, imageAttributes, renderMode, stride, refinement, referenceOrbit);
+    }
+
+    public Parameters withReferenceOrbit(ReferenceOrbit referenceOrbit) {
+        return new Parameters(x, y, width, height, imageAttributes, renderMode, stride, refinement, referenceOrbit);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        Parameters that = (Parameters) obj;
+        return x == that.x && y == that.y && width == that.width && height == that.height &&
+               imageAttributes.equals(that.imageAttributes) && renderMode == that.renderMode &&
+               stride == that.stride && refinement == that.refinement;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(x, y, width, height, imageAttributes, renderMode, stride, refinement);
+    }
+
     @Override
     public String toString() {
-        return "[" + firstY + ", " + width + "x" + height + ", " + imageAttributes + "]";
+        return "[" + x + ", " + y + ", " + width + "x" + height + ", " + imageAttributes + ", " + renderMode +
+               (stride > 1 || refinement ? ", stride " + stride + (refinement ? " refinement" : "") : "") + "]";
     }
 }
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2019 Johan Dykstrom
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package se.dykstrom.jppf.mandel.task;
+
+import org.jppf.node.protocol.DataProvider;
+import se.dykstrom.jppf.mandel.model.Coordinates;
+import se.dykstrom.jppf.mandel.model.Line;
+
+import java.util.List;
+
+/**
+ * A JPPF task that calculates the lines of one tile in a deep zoom image, using perturbation
+ * theory. Each pixel is calculated as a {@code double} distance from a reference point, whose
+ * orbit has been calculated with arbitrary precision on the client, see {@link ReferenceOrbit}.
+ * <p>
+ * When executed on the grid, the reference orbit is read from the data provider of the job,
+ * so that it is only sent once per job. When executed locally, the reference orbit is taken
+ * directly from the parameters.
+ *
+ * @author Johan Dykstrom
+ */
+public class PerturbationTask extends LineTask {
+
+    private static final long serialVersionUID = 1L;
+
+    /** The reference orbit, looked up when the task is run, and not sent back with the result. */
+    private transient ReferenceOrbit referenceOrbit;
+
+    /** The distance from the reference point to the upper left corner of the image. */
+    private transient double originX;
+    private transient double originY;
+
+    public PerturbationTask(String name, Parameters parameters) {
+        super(name, parameters);
+    }
+
+    @Override
+    protected List<Line> calcLines() {
+        referenceOrbit = findReferenceOrbit();
+        final Coordinates coordinates = parameters.getImageAttributes().getCoordinates();
+        originX = coordinates.getExactMinX().subtract(referenceOrbit.getReferenceX()).doubleValue();
+        originY = coordinates.getExactMinY().subtract(referenceOrbit.getReferenceY()).doubleValue();
+        return super.calcLines();
+    }
+
+    private ReferenceOrbit findReferenceOrbit() {
+        if (parameters.getReferenceOrbit() != null) {
+            return parameters.getReferenceOrbit();
+        }
+        final DataProvider dataProvider = getDataProvider();
+        if (dataProvider != null && dataProvider.getParameter(ReferenceOrbit.DATA_PROVIDER_KEY) != null) {
+            return dataProvider.getParameter(ReferenceOrbit.DATA_PROVIDER_KEY);
+        }
+        throw new IllegalStateException("No reference orbit for task " + name);
+    }
+
+    @Override
+    protected long calcLine(int imageY, int firstX, int step, int[] iterations, int[] fractions) {
+        final double scale = parameters.getImageAttributes().getScale();
+        final int maxIterations = parameters.getMaxIterations();
+        final double dcy = originY + imageY * scale;
+        // Perturbation has no shortcuts, so a point that escapes at iteration n has performed n + 1 iterations
+        long performed = 0;
+        for (int i = 0; i < iterations.length; i++) {
+            final int result = referenceOrbit.iterate(originX + (firstX + i * step) * scale, dcy, maxIterations);
+            iterations[i] = ScalarKernel.escapeTime(result, maxIterations);
+            fractions[i] = ScalarKernel.fraction(result);
+            performed += (iterations[i] < maxIterations) ? iterations[i] + 1 : maxIterations;
+        }
+        return performed;
+    }
+}
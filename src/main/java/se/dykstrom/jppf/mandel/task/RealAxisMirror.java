@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2019 Johan Dykstrom
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package se.dykstrom.jppf.mandel.task;
+
+import se.dykstrom.jppf.mandel.model.Coordinates;
+import se.dykstrom.jppf.mandel.model.ImageAttributes;
+import se.dykstrom.jppf.mandel.model.Line;
+
+import java.awt.Rectangle;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Uses the symmetry of the Mandelbrot set about the real axis to avoid calculating rows that are
+ * mirror images of other rows in the same image. Line y is at imaginary coordinate minY + y * scale,
+ * so line y is the mirror image of line k - y, where k = -2 * minY / scale. The mirror images are
+ * only pixel exact if k is an integer, that is, if the real axis is on a line, or halfway between
+ * two lines. For other images, nothing is mirrored.
+ * <p>
+ * Each area to calculate is first passed to {@link #exclude}, that returns the part of the area
+ * that must be calculated. The calculated lines are then passed to {@link #withMirroredLines},
+ * that adds their mirror images in the excluded part of the area.
+ *
+ * @author Johan Dykstrom
+ */
+public class RealAxisMirror {
+
+    /** A mirror that never mirrors anything. */
+    public static final RealAxisMirror NONE = new RealAxisMirror(0, false);
+
+    /** The largest distance from an integer, in pixels, that k may have to be considered an integer. */
+    private static final double TOLERANCE = 1e-6;
+
+    /** The sum of the line numbers of a line and its mirror image. */
+    private final int mirrorSum;
+
+    private final boolean aligned;
+
+    /** The areas whose lines are mirror images of calculated lines. */
+    private final List<Rectangle> mirroredAreas = new CopyOnWriteArrayList<>();
+
+    private RealAxisMirror(int mirrorSum, boolean aligned) {
+        this.mirrorSum = mirrorSum;
+        this.aligned = aligned;
+    }
+
+    /**
+     * Returns a mirror for the given image, that mirrors lines if the real axis is aligned with the
+     * lines of the image, see {@link #align}. Deep zoom images are never mirrored.
+     */
+    public static RealAxisMirror forImage(ImageAttributes imageAttributes) {
+        if (imageAttributes.isDeepZoom()) {
+            return NONE;
+        }
+        final double k = -2 * imageAttributes.getCoordinates().getMinY() / imageAttributes.getScale();
+        final long mirrorSum = Math.round(k);
+        if (Math.abs(k - mirrorSum) > TOLERANCE || mirrorSum < 0 || mirrorSum > Integer.MAX_VALUE / 2) {
+            return NONE;
+        }
+        return new RealAxisMirror((int) mirrorSum, true);
+    }
+
+    /**
+     * Returns image attributes that are aligned with the real axis, if the real axis crosses the image
+     * with the given height, or the given image attributes if not. The image is moved at most a quarter
+     * of a pixel, so that the real axis is on a line of the image, or halfway between two lines.
+     */
+    public static ImageAttributes align(ImageAttributes imageAttributes, int height) {
+        final Coordinates coordinates = imageAttributes.getCoordinates();
+        final double scale = imageAttributes.getScale();
+        final double k = -2 * coordinates.getMinY() / scale;
+        if (imageAttributes.isDeepZoom() || k < 0 || k > 2.0 * height) {
+            return imageAttributes;
+        }
+        final long mirrorSum = Math.round(k);
+        return imageAttributes.withCoordinates(new Coordinates(coordinates.getExactMinX(), new BigDecimal(-mirrorSum * scale / 2)));
+    }
+
+    /**
+     * Returns the part of the given area that must be calculated. If the area contains lines on both
+     * sides of the real axis, the larger side is calculated, and the lines on the smaller side that are
+     * mirror images of lines on the larger side are excluded. The excluded lines are remembered, and
+     * added by {@link #withMirroredLines} when their mirror images have been calculated.
+     */
+    public Rectangle exclude(int areaX, int areaY, int width, int height) {
+        final int endY = areaY + height;
+        // The lines in the area whose mirror images are also in the area
+        final int first = Math.max(areaY, mirrorSum - endY + 1);
+        final int last = Math.min(endY - 1, mirrorSum - areaY);
+        if (!aligned || first >= last) {
+            return new Rectangle(areaX, areaY, width, height);
+        }
+
+        if (mirrorSum >= areaY + endY - 1) {
+            // The part above the real axis is larger, exclude the lines below it
+            final int excludedY = mirrorSum / 2 + 1;
+            mirroredAreas.add(new Rectangle(areaX, excludedY, width, endY - excludedY));
+            return new Rectangle(areaX, areaY, width, excludedY - areaY);
+        } else {
+            // The part below the real axis is larger, exclude the lines above it
+            final int calculatedY = (mirrorSum + 1) / 2;
+            mirroredAreas.add(new Rectangle(areaX, areaY, width, calculatedY - areaY));
+            return new Rectangle(areaX, calculatedY, width, endY - calculatedY);
+        }
+    }
+
+    /**
+     * Returns the given lines, together with the mirror images of those lines that are mirrored
+     * into an area excluded by {@link #exclude}. The mirror images share escape times with the
+     * original lines.
+     */
+    public List<Line> withMirroredLines(List<Line> lines) {
+        if (mirroredAreas.isEmpty()) {
+            return lines;
+        }
+        final List<Line> result = new ArrayList<>(lines);
+        for (Line line : lines) {
+            final int mirrorY = mirrorSum - line.getY();
+            for (Rectangle area : mirroredAreas) {
+                if (area.contains(line.getX(), mirrorY)) {
+                    result.add(line.withY(mirrorY));
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2019 Johan Dykstrom
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package se.dykstrom.jppf.mandel.task;
+
+import se.dykstrom.jppf.mandel.model.Coordinates;
+import se.dykstrom.jppf.mandel.model.ImageAttributes;
+import se.dykstrom.jppf.mandel.model.Line;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Arrays;
+
+/**
+ * The orbit of a single reference point, calculated with arbitrary precision, and stored as
+ * {@code double} values. Using perturbation theory, the escape time of any point close to the
+ * reference point can be calculated by iterating only the difference between the orbit of the
+ * point and the reference orbit, and that difference is small enough to be represented in a
+ * {@code double}, even when the coordinates themselves are not.
+ * <p>
+ * The reference orbit is calculated on the client, once per image, and shared by all tasks
+ * that calculate the image, see {@link PerturbationTask}.
+ *
+ * @author Johan Dykstrom
+ */
+public class ReferenceOrbit implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /** The key used to store the reference orbit in the data provider of a job. */
+    public static final String DATA_PROVIDER_KEY = "referenceOrbit";
+
+    /** The coordinates of the reference point. */
+    private final BigDecimal referenceX;
+    private final BigDecimal referenceY;
+
+    /** The orbit of the reference point, starting with Z0 = 0, until it escapes or reaches the maximum number of iterations. */
+    private final double[] orbitX;
+    private final double[] orbitY;
+
+    private ReferenceOrbit(BigDecimal referenceX, BigDecimal referenceY, double[] orbitX, double[] orbitY) {
+        this.referenceX = referenceX;
+        this.referenceY = referenceY;
+        this.orbitX = orbitX;
+        this.orbitY = orbitY;
+    }
+
+    /**
+     * Calculates the reference orbit for an image, using the center of the image as reference point.
+     *
+     * @param imageAttributes The image attributes that define the image.
+     * @param width The width of the image in pixels.
+     * @param height The height of the image in pixels.
+     * @return The reference orbit.
+     */
+    public static ReferenceOrbit forImage(ImageAttributes imageAttributes, int width, int height) {
+        final double scale = imageAttributes.getScale();
+        final Coordinates center = imageAttributes.getCoordinates().translate(width / 2.0 * scale, height / 2.0 * scale, scale);
+        return calculate(center.getExactMinX(), center.getExactMinY(), imageAttributes.getMaxIterations(), Coordinates.precisionForScale(scale));
+    }
+
+    /**
+     * Calculates the orbit of the given reference point, with the given precision.
+     */
+    static ReferenceOrbit calculate(BigDecimal referenceX, BigDecimal referenceY, int maxIterations, MathContext mathContext) {
+        final double[] orbitX = new double[maxIterations + 1];
+        final double[] orbitY = new double[maxIterations + 1];
+
+        BigDecimal x = BigDecimal.ZERO;
+        BigDecimal y = BigDecimal.ZERO;
+        int length = 1;
+        while (length <= maxIterations) {
+            final BigDecimal tempX = x.multiply(x, mathContext).subtract(y.multiply(y, mathContext), mathContext).add(referenceX, mathContext);
+            y = x.multiply(y, mathContext).multiply(BigDecimal.valueOf(2)).add(referenceY, mathContext);
+            x = tempX;
+            orbitX[length] = x.doubleValue();
+            orbitY[length] = y.doubleValue();
+            length++;
+
+            // Keep the first point outside the escape radius, but no more
+            if (orbitX[length - 1] * orbitX[length - 1] + orbitY[length - 1] * orbitY[length - 1] > (2 * 2)) {
+                break;
+            }
+        }
+
+        if (length < orbitX.length) {
+            return new ReferenceOrbit(referenceX, referenceY, Arrays.copyOf(orbitX, length), Arrays.copyOf(orbitY, length));
+        }
+        return new ReferenceOrbit(referenceX, referenceY, orbitX, orbitY);
+    }
+
+    public BigDecimal getReferenceX() {
+        return referenceX;
+    }
+
+    public BigDecimal getReferenceY() {
+        return referenceY;
+    }
+
+    /**
+     * Returns the number of points in the reference orbit, including Z0.
+     */
+    public int getLength() {
+        return orbitX.length;
+    }
+
+    /**
+     * Iterates the point at distance (dcx, dcy) from the reference point, and returns its escape
+     * time, shifted left {@link Line#FRACTION_BITS} bits, plus the fraction of the escape time.
+     * The result is the same as that of {@link ScalarKernel#iterate} for the point, had it been
+     * calculated with enough precision, and without the shortcuts, so it is never negative. Use
+     * {@link ScalarKernel#escapeTime} and {@link ScalarKernel#fraction} to interpret the result.
+     * <p>
+     * The difference between the orbit of the point and the reference orbit is iterated using
+     * dz' = 2 * Z * dz + dz^2 + dc. When the full value z = Z + dz gets closer to zero than dz
+     * itself, the difference is about to lose precision relative to z, which would cause a
+     * glitch. At that point, and when the end of the reference orbit is reached, the iteration
+     * is rebased to the start of the reference orbit, using z as the new difference.
+     *
+     * @param dcx The X distance from the reference point.
+     * @param dcy The Y distance from the reference point.
+     * @param maxIterations The maximum number of iterations.
+     * @return The escape time and fraction of the point.
+     */
+    int iterate(double dcx, double dcy, int maxIterations) {
+        final double[] orbitX = this.orbitX;
+        final double[] orbitY = this.orbitY;
+        final int last = orbitX.length - 1;
+
+        double dx = 0;
+        double dy = 0;
+        int index = 0;
+
+        // Iteration n calculates z(n + 1), where z(1) = c, to match the kernels
+        for (int iteration = 0; iteration < maxIterations; iteration++) {
+            final double zx = orbitX[index];
+            final double zy = orbitY[index];
+            final double tempX = 2 * (zx * dx - zy * dy) + dx * dx - dy * dy + dcx;
+            dy = 2 * (zx * dy + zy * dx) + 2 * dx * dy + dcy;
+            dx = tempX;
+            index++;
+
+            final double x = orbitX[index] + dx;
+            final double y = orbitY[index] + dy;
+            final double magnitude = x * x + y * y;
+            if (magnitude > (2 * 2)) {
+                return iteration << Line.FRACTION_BITS | ScalarKernel.smoothFraction(magnitude);
+            }
+            if (magnitude < dx * dx + dy * dy || index == last) {
+                // Rebase to avoid a glitch, or because the reference orbit has escaped
+                dx = x;
+                dy = y;
+                index = 0;
+            }
+        }
+        return maxIterations << Line.FRACTION_BITS;
+    }
+}
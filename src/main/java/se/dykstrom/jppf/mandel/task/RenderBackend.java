@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2019 Johan Dykstrom
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package se.dykstrom.jppf.mandel.task;
+
+import se.dykstrom.jppf.mandel.model.Line;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.function.BiConsumer;
+
+/**
+ * A backend that calculates the tiles of an image, for example by sending them to a JPPF grid,
+ * or by calculating them in the local JVM.
+ *
+ * @author Johan Dykstrom
+ */
+public interface RenderBackend extends AutoCloseable {
+
+    /**
+     * Calculates all tiles defined by the parameters objects, and waits until they are done.
+     * The lines of each tile are passed to the given consumer, together with the parameters
+     * that define the tile, as soon as they have been calculated. The consumer may be called
+     * from several threads, and may block to slow down the delivery of results.
+     *
+     * @throws CancellationException If the calculation was cancelled by {@link #cancel()}.
+     */
+    void render(List<Parameters> parametersList, BiConsumer<Parameters, List<Line>> consumer) throws Exception;
+
+    /**
+     * Returns the number of tasks the backend can calculate in parallel, for example the
+     * number of processing threads in the grid, or the number of cores in the local JVM.
+     * This may change over time, for example when nodes join or leave the grid.
+     */
+    default int getParallelism() {
+        return 1;
+    }
+
+    /**
+     * Tells the backend how many images will be rendered concurrently, by calls to
+     * {@link #render} from different threads, so it can prepare resources for all of them.
+     * The default implementation does nothing.
+     */
+    default void setConcurrentRenders(int concurrentRenders) {
+    }
+
+    /**
+     * Cancels all calculations that have been started, but not yet completed. Any thread
+     * waiting in {@link #render} will get a {@link CancellationException}. Results calculated
+     * after this method has been called may still be passed to the result consumer.
+     */
+    void cancel();
+
+    @Override
+    void close();
+}
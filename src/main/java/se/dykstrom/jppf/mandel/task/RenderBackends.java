@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2019 Johan Dykstrom
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package se.dykstrom.jppf.mandel.task;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.dykstrom.jppf.mandel.metrics.GridMetrics;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * Creates {@link RenderBackend} objects. The backend is selected using the system property
+ * "mandel.backend": "jppf" (the default) to calculate the tiles on the JPPF grid, or "forkjoin"
+ * to calculate them in the local JVM. If no JPPF driver can be reached within the time given
+ * by the system property "mandel.driver.timeout", in milliseconds, the local backend is used.
+ * <p>
+ * The metrics of all tasks are available using JMX, see {@link GridMetrics}. If the system
+ * property "mandel.metrics.csv" is set, the metrics of each task are also written to the
+ * CSV file it names.
+ *
+ * @author Johan Dykstrom
+ */
+public final class RenderBackends {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RenderBackends.class);
+
+    /** The default time to wait for a JPPF driver in milliseconds. */
+    private static final long DEFAULT_DRIVER_TIMEOUT = 5000;
+
+    private RenderBackends() { }
+
+    /**
+     * Returns the selected backend.
+     *
+     * @param numberOfJobs The number of concurrent jobs to submit for each image, if using JPPF,
+     *                     or {@link TaskSpawner#AUTOMATIC_JOBS} to submit one job per node.
+     */
+    public static RenderBackend createBackend(int numberOfJobs) {
+        final String backend = System.getProperty("mandel.backend", "jppf");
+        switch (backend) {
+            case "forkjoin":
+                return new ForkJoinBackend(Runtime.getRuntime().availableProcessors(), createMetrics());
+            case "jppf":
+                return createJppfBackend(numberOfJobs);
+            default:
+                throw new IllegalArgumentException("Unknown backend: " + backend);
+        }
+    }
+
+    private static RenderBackend createJppfBackend(int numberOfJobs) {
+        final long timeout = Long.getLong("mandel.driver.timeout", DEFAULT_DRIVER_TIMEOUT);
+        final TaskSpawner spawner = new TaskSpawner(numberOfJobs, createMetrics());
+        if (spawner.awaitDriver(timeout)) {
+            return spawner;
+        }
+        LOGGER.warn("No JPPF driver reachable within {} ms, falling back to local calculation", timeout);
+        spawner.close();
+        return new ForkJoinBackend(Runtime.getRuntime().availableProcessors(), createMetrics());
+    }
+
+    /**
+     * Creates a metrics object, registered in the platform MBean server, and writing to a CSV
+     * file if one is configured. Failing to create the CSV file is logged, but otherwise ignored.
+     */
+    private static GridMetrics createMetrics() {
+        final String csvFile = System.getProperty("mandel.metrics.csv");
+        GridMetrics metrics = new GridMetrics();
+        if (csvFile != null) {
+            try {
+                metrics = new GridMetrics(Paths.get(csvFile));
+            } catch (IOException e) {
+                LOGGER.warn("Failed to create metrics file {}: {}", csvFile, e.getMessage());
+            }
+        }
+        return metrics.register();
+    }
+}
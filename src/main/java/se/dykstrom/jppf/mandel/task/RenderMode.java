@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2019 Johan Dykstrom
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package se.dykstrom.jppf.mandel.task;
+
+/**
+ * Defines the different modes that can be used to render a tile of the image.
+ *
+ * @author Johan Dykstrom
+ */
+public enum RenderMode {
+
+    /** Calculate every pixel in the tile, see {@link LineTask}. */
+    EXHAUSTIVE,
+
+    /** Calculate only rectangle borders, and fill uniform rectangles, see {@link MarianiSilverTask}. */
+    MARIANI_SILVER,
+
+    /** Calculate every pixel in the tile, relative to a high precision reference orbit, see {@link PerturbationTask}. */
+    PERTURBATION
+}
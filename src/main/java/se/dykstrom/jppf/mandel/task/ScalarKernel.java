@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2019 Johan Dykstrom
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package se.dykstrom.jppf.mandel.task;
+
+import se.dykstrom.jppf.mandel.model.Line;
+
+import static se.dykstrom.jppf.mandel.model.Line.FRACTION_BITS;
+import static se.dykstrom.jppf.mandel.model.Line.FRACTION_SCALE;
+
+/**
+ * The scalar escape time kernel, that calculates one point at a time. This kernel is always
+ * available, and defines the results that all other kernels must reproduce.
+ *
+ * @author Johan Dykstrom
+ */
+public class ScalarKernel implements EscapeTimeKernel {
+
+    private static final double LOG_2 = Math.log(2);
+    private static final double LOG_4 = Math.log(4);
+
+    @Override
+    public long calcLine(double minX, double y0, double scale, int firstX, int step, int maxIterations, int[] iterations, int[] fractions) {
+        long performed = 0;
+        for (int i = 0; i < iterations.length; i++) {
+            final int result = iterate(minX + (firstX + i * step) * scale, y0, maxIterations);
+            iterations[i] = escapeTime(result, maxIterations);
+            fractions[i] = fraction(result);
+            performed += performedIterations(result);
+        }
+        return performed;
+    }
+
+    /**
+     * Returns the "escape time" for the given point, that is, the number of iterations it takes
+     * before the point reaches the escape condition. A point that does not reach the escape
+     * condition within "the maximum number of iterations" is said to belong to the Mandelbrot set.
+     * See also <a href="http://en.wikipedia.org/wiki/Mandelbrot_set">Wikipedia</a>.
+     * <p>
+     * Points in the main cardioid or the period-2 bulb are known to belong to the set, and are
+     * returned without iterating. For other points, the orbit is checked for periodicity using
+     * Brent's method: a copy of the orbit is saved at iterations 1, 2, 4, 8, and so on, and if the
+     * orbit ever returns exactly to the saved value, it will never escape. The result is the same
+     * as if all iterations had been performed.
+     *
+     * @param x0 The X start value.
+     * @param y0 The Y start value.
+     * @param maxIterations The maximum number of iterations.
+     * @return The "escape time" of the given point.
+     */
+    public static int calcPoint(double x0, double y0, int maxIterations) {
+        return escapeTime(iterate(x0, y0, maxIterations), maxIterations);
+    }
+
+    /**
+     * Returns the number of iterations that {@link #calcPoint} performs for the given point,
+     * used to estimate the cost of calculating a region of the image. Points in the main
+     * cardioid or the period-2 bulb cost nothing, and periodic orbits cost only the
+     * iterations needed to detect the period.
+     *
+     * @param x0 The X start value.
+     * @param y0 The Y start value.
+     * @param maxIterations The maximum number of iterations.
+     * @return The number of iterations performed.
+     */
+    static int calcCost(double x0, double y0, int maxIterations) {
+        return performedIterations(iterate(x0, y0, maxIterations));
+    }
+
+    /**
+     * Iterates the given point, as described in {@link #calcPoint}, and returns the number of
+     * iterations performed, shifted left {@link Line#FRACTION_BITS} bits, plus the fraction of
+     * the escape time, see {@link #smoothFraction}. If the point was found to belong to the set
+     * without performing all iterations, the bitwise complement of the number of iterations
+     * performed is returned instead, which is always negative. Use {@link #escapeTime},
+     * {@link #fraction}, and {@link #performedIterations} to interpret the result. The maximum
+     * number of iterations must be less than 2^23, for the result to fit in an {@code int}.
+     */
+    static int iterate(double x0, double y0, int maxIterations) {
+        if (isInMainCardioid(x0, y0) || isInPeriod2Bulb(x0, y0)) {
+            return ~0;
+        }
+
+        double x = x0;
+        double y = y0;
+
+        // The saved orbit value used for periodicity checking
+        double savedX = x;
+        double savedY = y;
+        int nextSave = 2;
+
+        int iteration = 0;
+
+        while ((x * x + y * y <= (2 * 2)) && (iteration < maxIterations)) {
+            double tempX = x * x - y * y + x0;
+            y = 2 * x * y + y0;
+            x = tempX;
+            iteration++;
+
+            if (x == savedX && y == savedY) {
+                // The orbit is periodic, and the point belongs to the set
+                return ~iteration;
+            }
+            if (iteration == nextSave) {
+                savedX = x;
+                savedY = y;
+                nextSave <<= 1;
+            }
+        }
+
+        if (iteration == maxIterations) {
+            // The point did not escape, and belongs to the set
+            return iteration << FRACTION_BITS;
+        }
+        return iteration << FRACTION_BITS | smoothFraction(x * x + y * y);
+    }
+
+    /**
+     * Returns the escape time, given the result of {@link #iterate}.
+     */
+    static int escapeTime(int result, int maxIterations) {
+        return (result < 0) ? maxIterations : result >>> FRACTION_BITS;
+    }
+
+    /**
+     * Returns the fraction of the escape time, given the result of {@link #iterate}.
+     */
+    static int fraction(int result) {
+        return (result < 0) ? 0 : result & (FRACTION_SCALE - 1);
+    }
+
+    /**
+     * Returns the number of iterations performed, given the result of {@link #iterate}.
+     */
+    static int performedIterations(int result) {
+        return (result < 0) ? ~result : result >>> FRACTION_BITS;
+    }
+
+    /**
+     * Returns the fraction of the escape time of a point that escaped with the given squared
+     * magnitude, in units of 1 / {@link Line#FRACTION_SCALE} of an iteration. Adding the fraction
+     * to the escape time gives the normalized iteration count, 1 - log2(log|z| / log 2) more than
+     * the escape time, that is continuous across the bands of equal escape time. The fraction is
+     * limited to [0, 1), since with an escape radius of 2, |z| may be larger than 4 at escape.
+     *
+     * @param magnitude The squared magnitude of z when the point escaped, that is more than 4.
+     * @return The fraction, in the range [0, FRACTION_SCALE).
+     */
+    static int smoothFraction(double magnitude) {
+        final double fraction = 1 - Math.log(Math.log(magnitude) / LOG_4) / LOG_2;
+        // A NaN fraction is converted to zero by the cast
+        return (int) Math.max(0, Math.min(FRACTION_SCALE - 1, fraction * FRACTION_SCALE));
+    }
+
+    /**
+     * Returns {@code true} if the given point is inside the main cardioid of the Mandelbrot set.
+     */
+    private static boolean isInMainCardioid(double x0, double y0) {
+        final double xq = x0 - 0.25;
+        final double y2 = y0 * y0;
+        final double q = xq * xq + y2;
+        return q * (q + xq) <= 0.25 * y2;
+    }
+
+    /**
+     * Returns {@code true} if the given point is inside the period-2 bulb of the Mandelbrot set,
+     * that is, the circle with radius 1/4 centered at -1.
+     */
+    private static boolean isInPeriod2Bulb(double x0, double y0) {
+        final double xp = x0 + 1.0;
+        return xp * xp + y0 * y0 <= 0.0625;
+    }
+}
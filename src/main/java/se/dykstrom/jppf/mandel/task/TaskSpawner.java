@@ -19,119 +19,287 @@ package se.dykstrom.jppf.mandel.task;
 
 import org.jppf.JPPFException;
 import org.jppf.client.JPPFClient;
+import org.jppf.client.JPPFClientConnectionStatus;
 import org.jppf.client.JPPFConnectionPool;
 import org.jppf.client.JPPFJob;
+import org.jppf.client.event.JobEvent;
+import org.jppf.client.event.JobListenerAdapter;
+import org.jppf.node.protocol.DataProvider;
+import org.jppf.node.protocol.MemoryMapDataProvider;
 import org.jppf.node.protocol.Task;
 import org.jppf.utils.Operator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import se.dykstrom.jppf.mandel.metrics.GridMetrics;
+import se.dykstrom.jppf.mandel.model.ImageAttributes;
 import se.dykstrom.jppf.mandel.model.Line;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 
 /**
- * This class creates JPPF jobs and tasks, and submits them to a JPPF client.
+ * A render backend that creates JPPF jobs and tasks, and submits them to a JPPF client.
+ * <p>
+ * The number of concurrent jobs to submit for each image can be configured, or, with
+ * {@link #AUTOMATIC_JOBS}, follow the number of nodes in the grid, so that each node gets one
+ * job. The grid topology is monitored using the JPPF management API, and the number of jobs
+ * adapts to nodes joining or leaving the grid. The client connection pool grows when more
+ * connections are needed, but is never shrunk, to avoid reconnecting when the grid changes.
  *
  * @author Johan Dykstrom
  */
-public class TaskSpawner implements AutoCloseable {
+public class TaskSpawner implements RenderBackend {
+
+    /** The number of jobs that makes the task spawner submit one job per node. */
+    public static final int AUTOMATIC_JOBS = 0;
 
     private final Logger logger = LoggerFactory.getLogger(TaskSpawner.class);
 
     private final AtomicInteger jobId = new AtomicInteger(0);
 
+    /** Incremented each time the active jobs are cancelled. */
+    private final AtomicInteger cancelCount = new AtomicInteger(0);
+
+    /** The jobs that have been submitted, but not yet completed. */
+    private final Set<JPPFJob> activeJobs = ConcurrentHashMap.newKeySet();
+
     private final JPPFClient jppfClient;
 
-    public TaskSpawner() {
+    /** The number of concurrent jobs to submit in {@link #render}, or {@link #AUTOMATIC_JOBS}. */
+    private final int numberOfJobs;
+
+    /** The nodes and processing threads in the grid. */
+    private final GridTopology topology;
+
+    /** The number of images rendered concurrently, see {@link #setConcurrentRenders}. */
+    private volatile int concurrentRenders = 1;
+
+    /** The number of connections in the client connection pool. */
+    private int numberOfConnections;
+
+    /** Collects the metrics of the returned tasks. */
+    private final GridMetrics metrics;
+
+    public TaskSpawner(int numberOfJobs) {
+        this(numberOfJobs, new GridMetrics());
+    }
+
+    /**
+     * Creates a new task spawner, that records the metrics of all returned tasks in the given
+     * metrics object. The metrics object is closed when the task spawner is closed.
+     */
+    public TaskSpawner(int numberOfJobs, GridMetrics metrics) {
+        this.numberOfJobs = numberOfJobs;
+        this.metrics = metrics;
         logger.info("Creating JPPF client...");
         jppfClient = new JPPFClient();
+        topology = new GridTopology(jppfClient);
         logger.info("Creating JPPF client... done");
     }
 
+    /**
+     * Waits until the JPPF client has connected to a driver, or until the timeout expires.
+     *
+     * @param timeout The maximum time to wait in milliseconds.
+     * @return True if the client is connected to a driver.
+     */
+    public boolean awaitDriver(long timeout) {
+        return jppfClient.awaitConnectionPool(timeout, JPPFClientConnectionStatus.ACTIVE) != null;
+    }
+
+    @Override
+    public void render(List<Parameters> parametersList, BiConsumer<Parameters, List<Line>> consumer) throws JPPFException {
+        final int jobs = getNumberOfJobs();
+        logger.debug("Spawning {} tasks in {} jobs", parametersList.size(), jobs);
+        spawnTasks(parametersList, jobs, consumer);
+    }
+
+    /**
+     * Returns the number of concurrent jobs to submit for the next image. If the number of
+     * jobs is automatic, this is the current number of nodes in the grid, but at least one.
+     */
+    public int getNumberOfJobs() {
+        return (numberOfJobs == AUTOMATIC_JOBS) ? Math.max(1, topology.getNodeCount()) : numberOfJobs;
+    }
+
+    /**
+     * Sets the number of images rendered concurrently. The client connection pool is grown to
+     * hold all jobs of all concurrent images, so that the jobs of one image do not have to wait
+     * for a connection until the jobs of another image are done.
+     */
+    @Override
+    public void setConcurrentRenders(int concurrentRenders) {
+        if (concurrentRenders <= 0) {
+            throw new IllegalArgumentException("Invalid number of concurrent renders: " + concurrentRenders);
+        }
+        this.concurrentRenders = concurrentRenders;
+    }
+
+    /**
+     * Returns the total number of processing threads in the grid, but at least one.
+     */
+    @Override
+    public int getParallelism() {
+        return Math.max(1, topology.getThreadCount());
+    }
+
+    /**
+     * Spawns tasks for all parameters objects, waits until they are done, and returns all
+     * calculated lines.
+     */
     public List<Line> spawnTasks(List<Parameters> parametersList, int numberOfJobs) throws JPPFException {
-        return executeMultipleConcurrentJobs(parametersList, numberOfJobs);
+        final List<Line> lines = new ArrayList<>();
+        spawnTasks(parametersList, numberOfJobs, (parameters, tileLines) -> {
+            synchronized (lines) {
+                lines.addAll(tileLines);
+            }
+        });
+        return lines;
     }
 
-    private List<Line> executeMultipleConcurrentJobs(List<Parameters> parametersList, int numberOfJobs) throws JPPFException {
-        // ensure that the client connection pool has as many connections as the number of jobs to execute
-        ensureNumberOfConnections(jppfClient, numberOfJobs);
+    /**
+     * Spawns tasks for all parameters objects, and waits until they are done. The lines of each
+     * tile are passed to the given consumer, together with the parameters that define the tile,
+     * as soon as the task that calculated them is returned from the grid. The consumer may be
+     * called from several threads, and may block to slow down the delivery of results.
+     *
+     * @throws CancellationException If the jobs were cancelled by {@link #cancel()}.
+     */
+    public void spawnTasks(List<Parameters> parametersList, int numberOfJobs, BiConsumer<Parameters, List<Line>> consumer) throws JPPFException {
+        executeMultipleConcurrentJobs(parametersList, numberOfJobs, consumer);
+    }
+
+    private void executeMultipleConcurrentJobs(List<Parameters> parametersList, int numberOfJobs, BiConsumer<Parameters, List<Line>> consumer) throws JPPFException {
+        // remember the cancel count, to detect if the jobs are cancelled while they are being submitted
+        final int expectedCancelCount = cancelCount.get();
+
+        // ensure that the client connection pool has at least as many connections as the number of jobs to execute,
+        // including the jobs of any images rendered concurrently
+        ensureNumberOfConnections(numberOfJobs * concurrentRenders);
 
         // this list will hold all the jobs submitted for execution, so we can later collect and process their results
         final List<JPPFJob> jobs = new ArrayList<>(numberOfJobs);
 
-        int tasksPerJob = parametersList.size() / numberOfJobs;
-
-        // create and submit all the jobs
-        for (int jobNumber = 0; jobNumber < numberOfJobs; jobNumber++) {
-            jobs.add(createAndSubmitJob(parametersList, jobNumber * tasksPerJob, (jobNumber + 1) * tasksPerJob));
-        }
+        try {
+            // create and submit all the jobs
+            for (int jobNumber = 0; jobNumber < numberOfJobs; jobNumber++) {
+                List<Parameters> jobParameters = selectJobParameters(parametersList, jobNumber, numberOfJobs);
+                if (!jobParameters.isEmpty()) {
+                    JPPFJob job = createAndSubmitJob(jobParameters, jobNumber, consumer);
+                    jobs.add(job);
+                    activeJobs.add(job);
+                    if (cancelCount.get() != expectedCancelCount) {
+                        // the jobs were cancelled before this job was made active
+                        job.cancel(true);
+                    }
+                }
+            }
 
-        List<Line> lines = new ArrayList<>();
+            // wait until the jobs are finished and check their results
+            for (final JPPFJob job : jobs) {
+                // wait if necessary for the job to complete and collect its results
+                final List<Task<?>> results = job.awaitResults();
+                if (job.isCancelled()) {
+                    throw new CancellationException("Job " + job.getName() + " was cancelled");
+                }
 
-        // wait until the jobs are finished and process their results.
-        for (final JPPFJob job : jobs) {
-            // wait if necessary for the job to complete and collect its results
-            final List<Task<?>> results = job.awaitResults();
+                // process the job results
+                processExecutionResults(results);
+            }
+        } finally {
+            activeJobs.removeAll(jobs);
+            jobs.forEach(job -> metrics.completeJob(job.getName()));
+        }
+    }
 
-            // process the job results
-            lines.addAll(processExecutionResults(results));
+    /**
+     * Cancels all jobs that have been submitted, but not yet completed, both in the client and
+     * in the driver. Any thread waiting for the cancelled jobs in {@link #spawnTasks} will get a
+     * {@link CancellationException}. Results returned by the cancelled jobs after this method
+     * has been called may still be passed to the result consumer.
+     */
+    @Override
+    public void cancel() {
+        cancelCount.incrementAndGet();
+        for (JPPFJob job : activeJobs) {
+            logger.debug("Cancelling job: {}", job.getName());
+            job.cancel(true);
         }
+    }
 
-        return lines;
+    /**
+     * Selects the parameters to include in job number {@code jobNumber}. The parameters are
+     * assigned to the jobs in a round-robin fashion, so that expensive regions of the image,
+     * that usually consist of neighbouring tiles, are spread across all jobs.
+     */
+    private static List<Parameters> selectJobParameters(List<Parameters> parametersList, int jobNumber, int numberOfJobs) {
+        List<Parameters> jobParameters = new ArrayList<>();
+        for (int i = jobNumber; i < parametersList.size(); i += numberOfJobs) {
+            jobParameters.add(parametersList.get(i));
+        }
+        return jobParameters;
     }
 
-    private JPPFJob createAndSubmitJob(List<Parameters> parametersList, int fromIndex, int toIndex) throws JPPFException {
+    private JPPFJob createAndSubmitJob(List<Parameters> parametersList, int jobNumber, BiConsumer<Parameters, List<Line>> consumer) throws JPPFException {
         // create a job with a distinct name
-        String jobName = "job-" + jobId.getAndIncrement() + "-" + fromIndex + "-" + (toIndex - 1);
+        String jobName = "job-" + jobId.getAndIncrement() + "-" + jobNumber;
         logger.debug("Creating job: {}", jobName);
-        final JPPFJob job = createJob(jobName, parametersList.subList(fromIndex, toIndex));
+        final JPPFJob job = createJob(jobName, parametersList);
+
+        // deliver the results of the tasks as soon as they are returned
+        job.addJobListener(new ResultListener(parametersList, consumer, metrics, jobName, System.currentTimeMillis()));
 
         // submit the job for execution, without blocking the current thread
+        metrics.startJob(jobName);
         jppfClient.submitAsync(job);
 
         return job;
     }
 
     /**
-     * Ensure that the JPPF client has the desired number of connections.
+     * Ensure that the JPPF client has at least the desired number of connections. The pool
+     * is only resized if it is too small, and never shrunk, so that a stable number of jobs
+     * does not cause any resizing, and a varying number of jobs does not cause reconnecting.
      *
-     * @param jppfClient          the JPPF client which submits the jobs.
-     * @param numberOfConnections the desired number of connections.
+     * @param minimumConnections the desired number of connections.
      */
-    private void ensureNumberOfConnections(final JPPFClient jppfClient, final int numberOfConnections) {
+    private synchronized void ensureNumberOfConnections(final int minimumConnections) {
+        if (minimumConnections <= numberOfConnections) {
+            return;
+        }
+
         // wait until the client has at least one connection pool with at least one available connection
         final JPPFConnectionPool pool = jppfClient.awaitActiveConnectionPool();
 
-        // if the pool doesn't have the expected number of connections, change its size
-        if (pool.getConnections().size() != numberOfConnections) {
-            // set the pool size to the desired number of connections
-            pool.setSize(numberOfConnections);
+        // if the pool is too small, grow it to the desired number of connections
+        if (pool.getConnections().size() < minimumConnections) {
+            logger.info("Resizing connection pool from {} to {} connections", pool.getConnections().size(), minimumConnections);
+            pool.setSize(minimumConnections);
         }
 
         // wait until all desired connections are available (ACTIVE status)
-        pool.awaitActiveConnections(Operator.AT_LEAST, numberOfConnections);
+        pool.awaitActiveConnections(Operator.AT_LEAST, minimumConnections);
+        numberOfConnections = Math.max(minimumConnections, pool.getConnections().size());
     }
 
 
     /**
-     * Process the execution results of each submitted task.
+     * Process the execution results of each submitted task. The lines have already been
+     * delivered by the {@link ResultListener}, so this method only checks for errors.
      *
      * @param results the tasks results after execution on the grid.
      */
-    @SuppressWarnings("unchecked")
-    private List<Line> processExecutionResults(final List<Task<?>> results) throws JPPFException {
-        List<Line> lines = new ArrayList<>();
-        // process the results
+    private void processExecutionResults(final List<Task<?>> results) throws JPPFException {
         for (final Task<?> task : results) {
             if (task.getThrowable() != null) {
                 throw new JPPFException("Task " + task.getId() + " threw exception: " + task.getThrowable().getMessage(), task.getThrowable());
-            } else {
-                lines.addAll((List<Line>) task.getResult());
             }
         }
-        return lines;
     }
 
     /**
@@ -145,19 +313,92 @@ public class TaskSpawner implements AutoCloseable {
     private JPPFJob createJob(final String jobName, List<Parameters> parametersList) throws JPPFException {
         final JPPFJob job = new JPPFJob();
         job.setName(jobName);
+        final DataProvider dataProvider = new MemoryMapDataProvider();
+        job.setDataProvider(dataProvider);
+
+        // the reference orbit is shared by all tasks, so send it once with the job, and not with each task
+        final ReferenceOrbit referenceOrbit = parametersList.get(0).getReferenceOrbit();
+        if (referenceOrbit != null) {
+            dataProvider.setParameter(ReferenceOrbit.DATA_PROVIDER_KEY, referenceOrbit);
+        }
+
+        // the image attributes are usually also shared by all tasks
+        final ImageAttributes imageAttributes = parametersList.get(0).getImageAttributes();
+        final boolean shared = parametersList.stream().allMatch(parameters -> parameters.getImageAttributes().equals(imageAttributes));
+        if (shared) {
+            dataProvider.setParameter(TileTask.IMAGE_ATTRIBUTES_KEY, imageAttributes);
+        }
 
         for (int i = 0; i < parametersList.size(); i++) {
             String taskId = jobName + "-task-" + i;
-            Task<?> task = job.add(new LineTask(taskId, parametersList.get(i)));
-            task.setId(taskId);
+            TileTask task = TileTask.create(taskId, parametersList.get(i));
+            if (shared) {
+                task.shareImageAttributes();
+            }
+            job.add(task).setId(taskId);
         }
         return job;
     }
 
+    /**
+     * A job listener that passes the lines calculated by each returned task to a consumer,
+     * as soon as they are returned from the grid, and records the metrics of the task.
+     * Each task is delivered only once, even if it is returned more than once, for example
+     * if the job is resubmitted. The returned tasks do not contain the image attributes, so
+     * the lines are passed to the consumer with the original parameters.
+     */
+    private static class ResultListener extends JobListenerAdapter {
+
+        /** The parameters of the tasks in the job, indexed by task position. */
+        private final List<Parameters> parametersList;
+        private final BiConsumer<Parameters, List<Line>> consumer;
+        private final GridMetrics metrics;
+        private final String jobName;
+        private final long submitMillis;
+
+        /** The positions of the tasks that have already been delivered. */
+        private final Set<Integer> delivered = ConcurrentHashMap.newKeySet();
+
+        ResultListener(List<Parameters> parametersList, BiConsumer<Parameters, List<Line>> consumer, GridMetrics metrics,
+                       String jobName, long submitMillis) {
+            this.parametersList = parametersList;
+            this.consumer = consumer;
+            this.metrics = metrics;
+            this.jobName = jobName;
+            this.submitMillis = submitMillis;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void jobReturned(JobEvent event) {
+            final long returnMillis = System.currentTimeMillis();
+            for (final Task<?> task : event.getJobTasks()) {
+                if (task.getThrowable() == null && task.getResult() != null && delivered.add(task.getPosition())) {
+                    final TileTask tileTask = (TileTask) task;
+                    consumer.accept(parametersList.get(task.getPosition()), (List<Line>) task.getResult());
+                    // Record the metrics after delivering the result, so metrics never affect rendering
+                    if (tileTask.getMetrics() != null) {
+                        metrics.record(jobName, tileTask.getMetrics(), submitMillis, returnMillis);
+                    }
+                }
+            }
+        }
+    }
+
     @Override
     public void close() {
         logger.info("Closing JPPF client...");
+        topology.close();
         jppfClient.close();
+        metrics.close();
         logger.info("Closing JPPF client... done");
     }
+
+    @Override
+    public String toString() {
+        if (numberOfJobs == AUTOMATIC_JOBS) {
+            return "JPPF backend with one job per node";
+        }
+        return "JPPF backend with " + numberOfJobs + " concurrent jobs";
+    }
 }
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2019 Johan Dykstrom
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package se.dykstrom.jppf.mandel.task;
+
+import se.dykstrom.jppf.mandel.model.ImageAttributes;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Divides an image into square tiles of a configurable size, and creates one parameters object
+ * for each tile. Tiles in the last column and row are smaller if the image size is not a multiple
+ * of the tile size.
+ * <p>
+ * Alternatively, the image can be divided into the same number of rectangular tiles of different
+ * sizes, that are estimated to cost about the same to calculate, see {@link #partitionByCost}.
+ *
+ * @author Johan Dykstrom
+ */
+public class TilePartitioner {
+
+    /** The default width and height of a tile in pixels. */
+    public static final int DEFAULT_TILE_SIZE = 64;
+
+    private final int tileSize;
+
+    public TilePartitioner(int tileSize) {
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("Invalid tile size: " + tileSize);
+        }
+        this.tileSize = tileSize;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * Divides the image into tiles, and returns a list of parameters, one for each tile,
+     * in row-major order.
+     *
+     * @param width The width of the image in pixels.
+     * @param height The height of the image in pixels.
+     * @param imageAttributes The image attributes of the entire image.
+     * @return A list of parameters objects.
+     */
+    public List<Parameters> partition(int width, int height, ImageAttributes imageAttributes) {
+        return partition(0, 0, width, height, imageAttributes);
+    }
+
+    /**
+     * Divides a rectangular area of the image into tiles, and returns a list of parameters,
+     * one for each tile, in row-major order. The tiles are aligned with the area, and not with
+     * the image.
+     *
+     * @param areaX The x-coordinate of the top-left corner of the area.
+     * @param areaY The y-coordinate of the top-left corner of the area.
+     * @param width The width of the area in pixels.
+     * @param height The height of the area in pixels.
+     * @param imageAttributes The image attributes of the entire image.
+     * @return A list of parameters objects.
+     */
+    public List<Parameters> partition(int areaX, int areaY, int width, int height, ImageAttributes imageAttributes) {
+        List<Parameters> parametersList = new ArrayList<>();
+        for (int y = 0; y < height; y += tileSize) {
+            for (int x = 0; x < width; x += tileSize) {
+                int tileWidth = Math.min(tileSize, width - x);
+                int tileHeight = Math.min(tileSize, height - y);
+                parametersList.add(new Parameters(areaX + x, areaY + y, tileWidth, tileHeight, imageAttributes));
+            }
+        }
+        return parametersList;
+    }
+
+    /**
+     * Divides a rectangular area of the image into as many tiles as {@link #partition(int, int,
+     * int, int, ImageAttributes)}, but with sizes chosen so that each tile is estimated to cost
+     * about the same to calculate. The cost is estimated by a low resolution probe of the area,
+     * and the area is recursively divided in two along its longer side, where the cost of the
+     * two parts is in proportion to the number of tiles they will be divided into.
+     * <p>
+     * Deep zoom images cannot be probed in double precision, and are divided into square tiles.
+     *
+     * @param areaX The x-coordinate of the top-left corner of the area.
+     * @param areaY The y-coordinate of the top-left corner of the area.
+     * @param width The width of the area in pixels.
+     * @param height The height of the area in pixels.
+     * @param imageAttributes The image attributes of the entire image.
+     * @return A list of parameters objects.
+     */
+    public List<Parameters> partitionByCost(int areaX, int areaY, int width, int height, ImageAttributes imageAttributes) {
+        if (imageAttributes.isDeepZoom() || width <= 0 || height <= 0) {
+            return partition(areaX, areaY, width, height, imageAttributes);
+        }
+        final int numberOfTiles = ((width + tileSize - 1) / tileSize) * ((height + tileSize - 1) / tileSize);
+        final CostMap costMap = CostMap.probe(areaX, areaY, width, height, tileSize, imageAttributes);
+        final List<Parameters> parametersList = new ArrayList<>();
+        divide(costMap, 0, 0, costMap.getColumns(), costMap.getRows(), numberOfTiles, imageAttributes, parametersList);
+        return parametersList;
+    }
+
+    /**
+     * Divides the cells from (column0, row0), inclusive, to (column1, row1), exclusive, into
+     * the given number of tiles, and adds the tiles to the list of parameters.
+     */
+    private static void divide(CostMap costMap, int column0, int row0, int column1, int row1, int numberOfTiles,
+                               ImageAttributes imageAttributes, List<Parameters> parametersList) {
+        final int x0 = costMap.getX(column0);
+        final int y0 = costMap.getY(row0);
+        final int x1 = costMap.getX(column1);
+        final int y1 = costMap.getY(row1);
+        final boolean splitColumns = (x1 - x0 >= y1 - y0) ? column1 - column0 > 1 : row1 - row0 == 1;
+        if (numberOfTiles <= 1 || (column1 - column0 == 1 && row1 - row0 == 1)) {
+            parametersList.add(new Parameters(x0, y0, x1 - x0, y1 - y0, imageAttributes));
+            return;
+        }
+
+        // Find the split that gives the first part its share of the cost
+        final int firstTiles = numberOfTiles / 2;
+        final double target = costMap.getCost(column0, row0, column1, row1) * firstTiles / numberOfTiles;
+        final int start = splitColumns ? column0 : row0;
+        final int end = splitColumns ? column1 : row1;
+        int split = start + 1;
+        double bestDifference = Double.MAX_VALUE;
+        for (int i = start + 1; i < end; i++) {
+            final double cost = splitColumns ? costMap.getCost(column0, row0, i, row1) : costMap.getCost(column0, row0, column1, i);
+            final double difference = Math.abs(cost - target);
+            if (difference < bestDifference) {
+                bestDifference = difference;
+                split = i;
+            }
+        }
+
+        if (splitColumns) {
+            divide(costMap, column0, row0, split, row1, firstTiles, imageAttributes, parametersList);
+            divide(costMap, split, row0, column1, row1, numberOfTiles - firstTiles, imageAttributes, parametersList);
+        } else {
+            divide(costMap, column0, row0, column1, split, firstTiles, imageAttributes, parametersList);
+            divide(costMap, column0, split, column1, row1, numberOfTiles - firstTiles, imageAttributes, parametersList);
+        }
+    }
+}
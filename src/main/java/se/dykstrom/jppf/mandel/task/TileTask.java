@@ -0,0 +1,217 @@
+/*
+ * Copyright (C) 2019 Johan Dykstrom
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package se.dykstrom.jppf.mandel.task;
+
+import org.jppf.node.protocol.AbstractTask;
+import org.jppf.node.protocol.DataProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import se.dykstrom.jppf.mandel.metrics.TaskMetrics;
+import se.dykstrom.jppf.mandel.model.ImageAttributes;
+import se.dykstrom.jppf.mandel.model.Line;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.function.Supplier;
+
+/**
+ * Base class for JPPF tasks that calculate the lines of one tile, as defined by a parameters object.
+ * <p>
+ * To keep the tasks small when sent over the network, the parameters are serialized field by
+ * field, see {@link #writeObject}. The image attributes are the same for all tasks in a job, and
+ * can be sent once with the job instead, see {@link #IMAGE_ATTRIBUTES_KEY}.
+ *
+ * @author Johan Dykstrom
+ */
+public abstract class TileTask extends AbstractTask<List<Line>> {
+
+    private static final long serialVersionUID = 1L;
+
+    /** The key used to store the image attributes shared by all tasks in the data provider of a job. */
+    public static final String IMAGE_ATTRIBUTES_KEY = "imageAttributes";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TileTask.class);
+
+    protected final String name;
+
+    /**
+     * The parameters that define the tile. When the task has been sent to the grid, the image
+     * attributes of the parameters may be missing until the task is run, see {@link #run()}.
+     */
+    protected transient Parameters parameters;
+
+    /** True if the image attributes are not sent with the task, but with the job. */
+    private transient boolean sharedImageAttributes;
+
+    /** The metrics measured while calculating the tile. */
+    private TaskMetrics metrics;
+
+    /** The number of iterations performed while calculating the tile, see {@link #addIterations}. */
+    private transient long performedIterations;
+
+    /** True if the task has been cancelled while running, see {@link #onCancel()}. */
+    private transient volatile boolean cancelled;
+
+    protected TileTask(String name, Parameters parameters) {
+        this.name = name;
+        this.parameters = parameters;
+    }
+
+    /**
+     * Creates a task that renders a tile using the render mode specified in the parameters.
+     */
+    static TileTask create(String name, Parameters parameters) {
+        switch (parameters.getRenderMode()) {
+            case EXHAUSTIVE:
+                return new LineTask(name, parameters);
+            case MARIANI_SILVER:
+                return new MarianiSilverTask(name, parameters);
+            case PERTURBATION:
+                return new PerturbationTask(name, parameters);
+            default:
+                throw new IllegalArgumentException("Unknown render mode: " + parameters.getRenderMode());
+        }
+    }
+
+    /**
+     * Returns the parameters that define the tile calculated by this task.
+     */
+    public Parameters getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Makes this task read the image attributes from the data provider of the job, instead of
+     * sending them with the task. The caller must store the image attributes in the data provider
+     * using the key {@link #IMAGE_ATTRIBUTES_KEY}.
+     */
+    void shareImageAttributes() {
+        sharedImageAttributes = true;
+    }
+
+    @Override
+    public void run() {
+        if (parameters.getImageAttributes() == null) {
+            parameters = parameters.withImageAttributes(findImageAttributes());
+        }
+        LOGGER.debug("Running task {}...", name);
+        setResult(measure(this::calcLines));
+        LOGGER.debug("Running task {}... done", name);
+    }
+
+    private ImageAttributes findImageAttributes() {
+        final DataProvider dataProvider = getDataProvider();
+        if (dataProvider != null && dataProvider.getParameter(IMAGE_ATTRIBUTES_KEY) != null) {
+            return dataProvider.getParameter(IMAGE_ATTRIBUTES_KEY);
+        }
+        throw new IllegalStateException("No image attributes for task " + name);
+    }
+
+    /**
+     * Calculates and returns the lines of the tile.
+     */
+    protected abstract List<Line> calcLines();
+
+    /**
+     * Cancels the task. If the task is running, it stops calculating at the next call to
+     * {@link #checkCancelled()}. Called by the JPPF node when the job is cancelled, and by
+     * {@link ForkJoinBackend#cancel()} for tasks that are run locally.
+     */
+    @Override
+    public void onCancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Throws a {@link CancellationException} if the task has been cancelled. Subclasses should call
+     * this method between lines, or other small units of work, to stop calculating a cancelled tile.
+     */
+    protected void checkCancelled() {
+        if (cancelled) {
+            throw new CancellationException("Task " + name + " was cancelled");
+        }
+    }
+
+    /**
+     * Adds to the number of iterations performed while calculating the tile. Subclasses must call
+     * this method with the number of iterations returned by the kernel, or otherwise performed.
+     */
+    protected void addIterations(long iterations) {
+        performedIterations += iterations;
+    }
+
+    /**
+     * Returns the metrics measured while calculating the tile, or {@code null} if the task has not been run.
+     */
+    public TaskMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Calculates the lines of the tile using the given calculation, and measures the time it takes.
+     *
+     * @param calculation The calculation to perform.
+     * @return The calculated lines.
+     */
+    protected List<Line> measure(Supplier<List<Line>> calculation) {
+        performedIterations = 0;
+        final long startMillis = System.currentTimeMillis();
+        final long start = System.nanoTime();
+        final List<Line> lines = calculation.get();
+        final long computeNanos = System.nanoTime() - start;
+        final String nodeId = (isInNode() && getNode() != null) ? getNode().getUuid() : "local";
+        metrics = TaskMetrics.create(name, nodeId, startMillis, computeNanos, performedIterations, lines);
+        return lines;
+    }
+
+    /**
+     * Writes the parameters field by field, and the image attributes only if they are not
+     * shared. The reference orbit is never sent with the task, see {@link ReferenceOrbit}.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(parameters.getX());
+        out.writeInt(parameters.getY());
+        out.writeInt(parameters.getWidth());
+        out.writeInt(parameters.getHeight());
+        out.writeByte(parameters.getRenderMode().ordinal());
+        out.writeInt(parameters.getStride());
+        out.writeBoolean(parameters.isRefinement());
+        out.writeBoolean(sharedImageAttributes);
+        if (!sharedImageAttributes) {
+            out.writeObject(parameters.getImageAttributes());
+        }
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        final int x = in.readInt();
+        final int y = in.readInt();
+        final int width = in.readInt();
+        final int height = in.readInt();
+        final RenderMode renderMode = RenderMode.values()[in.readByte()];
+        final int stride = in.readInt();
+        final boolean refinement = in.readBoolean();
+        sharedImageAttributes = in.readBoolean();
+        final ImageAttributes imageAttributes = sharedImageAttributes ? null : (ImageAttributes) in.readObject();
+        parameters = new Parameters(x, y, width, height, imageAttributes, renderMode).withStride(stride, refinement);
+    }
+}
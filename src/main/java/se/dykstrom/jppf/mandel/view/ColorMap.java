@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2019 Johan Dykstrom
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package se.dykstrom.jppf.mandel.view;
+
+import se.dykstrom.jppf.mandel.model.Line;
+
+/**
+ * Converts escape times to RGB colors. With the default palette, points that escape quickly
+ * are bright yellow, and points that escape slowly are dark red, fading to black close to the
+ * maximum number of iterations. Points that do not escape are black.
+ * <p>
+ * The escape times are spread evenly over the colors of a {@link Palette}, in reverse order,
+ * so that the first palette color is used for the slowest escapes. The colors may be
+ * rotated, to cycle the colors of an image. With smooth coloring, the fraction of the escape
+ * time is used to interpolate between the colors of two consecutive escape times, which
+ * removes the color bands.
+ *
+ * @author Johan Dykstrom
+ */
+public final class ColorMap {
+
+    /** The color of points that do not escape. */
+    private static final int INTERIOR_COLOR = 0xFF000000;
+
+    private ColorMap() { }
+
+    /**
+     * Returns the RGB color of a point with the given escape time, using the default palette.
+     *
+     * @param iterations The escape time of the point.
+     * @param maxIterations The maximum number of iterations used to calculate the escape time.
+     * @return The color of the point in the default RGB color model.
+     */
+    public static int toRgb(int iterations, int maxIterations) {
+        return toRgb(Palette.FIRE.getColors(), iterations, maxIterations, 0);
+    }
+
+    /**
+     * Returns the RGB color of a point with the given escape time.
+     *
+     * @param colors The colors of the palette.
+     * @param iterations The escape time of the point.
+     * @param maxIterations The maximum number of iterations used to calculate the escape time.
+     * @param offset The number of palette colors to rotate the colors.
+     * @return The color of the point in the default RGB color model.
+     */
+    private static int toRgb(int[] colors, int iterations, int maxIterations, int offset) {
+        if (iterations >= maxIterations) {
+            return INTERIOR_COLOR;
+        }
+        // The factor used to convert the "escape time" value to a position in the palette
+        final double factor = (double) (colors.length - 1) / maxIterations;
+        final double position = (maxIterations - iterations) * factor;
+        return colors[((int) position + offset) % colors.length];
+    }
+
+    /**
+     * Returns a table of the RGB colors of all escape times from 0 to {@code maxIterations},
+     * using the default palette, see {@link #createTable(Palette, int, int)}.
+     */
+    public static int[] createTable(int maxIterations) {
+        return createTable(Palette.FIRE, maxIterations, 0);
+    }
+
+    /**
+     * Returns a table of the RGB colors of all escape times from 0 to {@code maxIterations},
+     * used to convert many escape times to colors using a lookup per pixel.
+     *
+     * @param palette The palette to use.
+     * @param maxIterations The maximum number of iterations used to calculate the escape times.
+     * @param offset The number of palette colors to rotate the colors, used to cycle the colors.
+     * @return An array where element {@code i} is the color of a point with escape time {@code i}.
+     */
+    public static int[] createTable(Palette palette, int maxIterations, int offset) {
+        final int[] colors = palette.getColors();
+        final int rotation = Math.floorMod(offset, colors.length);
+        final int[] table = new int[maxIterations + 1];
+        for (int iterations = 0; iterations <= maxIterations; iterations++) {
+            table[iterations] = toRgb(colors, iterations, maxIterations, rotation);
+        }
+        return table;
+    }
+
+    /**
+     * Returns the color of a point with the given escape time and fraction, interpolated between
+     * the colors of the escape time and the next escape time in the given color table.
+     *
+     * @param table The color table, see {@link #createTable(Palette, int, int)}.
+     * @param iterations The escape time of the point.
+     * @param fraction The fraction of the escape time, in the range [0, {@link Line#FRACTION_SCALE}).
+     * @return The color of the point in the default RGB color model.
+     */
+    public static int toSmoothRgb(int[] table, int iterations, int fraction) {
+        if (fraction == 0 || iterations + 1 >= table.length) {
+            return table[iterations];
+        }
+        final int from = table[iterations];
+        final int to = table[iterations + 1];
+        final int r = blend((from >> 16) & 0xFF, (to >> 16) & 0xFF, fraction);
+        final int g = blend((from >> 8) & 0xFF, (to >> 8) & 0xFF, fraction);
+        final int b = blend(from & 0xFF, to & 0xFF, fraction);
+        return (from & 0xFF000000) | r << 16 | g << 8 | b;
+    }
+
+    private static int blend(int from, int to, int fraction) {
+        return from + (((to - from) * fraction) >> Line.FRACTION_BITS);
+    }
+}
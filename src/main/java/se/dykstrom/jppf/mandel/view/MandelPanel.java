@@ -22,52 +22,257 @@ import se.dykstrom.jppf.mandel.model.Line;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
 
 import static se.dykstrom.jppf.mandel.model.ImageAttributes.INITIAL_IMAGE_SIZE_IN_PIXELS;
 
 /**
- * Displays the Mandelbrot fractal image in a panel. The image is drawn pixel by pixel,
- * using the RGB colors stored in the given {@link Line} objects.
+ * Displays the Mandelbrot fractal image in a panel. The escape times stored in the given
+ * {@link Line} objects are decoded into an array of escape times, one per pixel, and converted
+ * to RGB colors in the pixel array that backs the image, using a color table created by the
+ * {@link ColorMap}. Since the escape times and their fractions are kept, the image can be
+ * recolored, with or without smooth coloring, without calculating it again. The image is reused
+ * as long as the size of the image does not change.
+ * <p>
+ * Sampled lines from a coarse rendering pass are drawn as blocks of pixels. To allow the passes
+ * to arrive in any order, the panel keeps track of the block size each pixel was drawn with,
+ * and never overwrites a pixel with a value from a coarser pass.
  *
  * @author Johan Dykstrom
  */
 class MandelPanel extends JComponent {
 
+    /** The block size of pixels that have not been drawn. */
+    private static final byte NOT_DRAWN = Byte.MAX_VALUE;
+
     /** The off-screen image buffer. */
     private BufferedImage image;
 
+    /** The pixels of the image buffer, one RGB value per pixel, row by row. */
+    private int[] pixels;
+
+    /** The block size that each pixel was drawn with, zero if the pixel was calculated exactly. */
+    private byte[] blockSizes;
+
+    /** The escape time of each pixel, row by row. */
+    private int[] iterations;
+
+    /** The fraction of the escape time of each pixel, row by row. */
+    private int[] fractions;
+
+    /** Buffers used to decode sampled lines. */
+    private int[] samples = new int[0];
+    private int[] sampleFractions = new int[0];
+
+    /** The color of each escape time, for the maximum number of iterations in {@code colorTableIterations}. */
+    private int[] colorTable;
+    private int colorTableIterations;
+
+    /** The colors used to create the color table. */
+    private Palette palette = Palette.FIRE;
+    private int colorOffset;
+
+    /** True if the fractions of the escape times are used to interpolate between the colors. */
+    private boolean smooth;
+
+    /** The offset at which to paint the image, used to give feedback while panning. */
+    private final Point offset = new Point();
+
     public MandelPanel() {
         setPreferredSize(new Dimension(INITIAL_IMAGE_SIZE_IN_PIXELS, INITIAL_IMAGE_SIZE_IN_PIXELS));
     }
 
     @Override
     public void paintComponent(Graphics graphics) {
-        graphics.drawImage(image, 0, 0, null);
+        if (offset.x != 0 || offset.y != 0) {
+            graphics.setColor(Color.BLACK);
+            graphics.fillRect(0, 0, getWidth(), getHeight());
+        }
+        graphics.drawImage(image, offset.x, offset.y, null);
     }
 
     /**
-     * Clears the image and panel.
+     * Sets the offset at which to paint the image, without changing the image itself.
      */
-    void clear() {
-        image = new BufferedImage(getWidth(), getHeight(), BufferedImage.TYPE_INT_RGB);
+    void setOffset(int dx, int dy) {
+        offset.setLocation(dx, dy);
+        repaint();
+    }
+
+    /**
+     * Returns the size of the image buffer, or {@code null} if there is no image.
+     */
+    Dimension getImageSize() {
+        return image == null ? null : new Dimension(image.getWidth(), image.getHeight());
+    }
+
+    /**
+     * Moves the contents of the image in place, and clears the parts of the image that
+     * are exposed by the move. Also resets the offset.
+     *
+     * @param dx The horizontal distance to move, positive to move the contents to the right.
+     * @param dy The vertical distance to move, positive to move the contents down.
+     */
+    void shift(int dx, int dy) {
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        final int length = width - Math.abs(dx);
+        final int fromX = Math.max(0, -dx);
+        final int toX = Math.max(0, dx);
+
+        // Move the rows in an order that does not overwrite rows that have not been moved yet
+        for (int i = 0; i < height; i++) {
+            final int y = (dy > 0) ? height - 1 - i : i;
+            final int index = y * width;
+            final int fromY = y - dy;
+            if (fromY < 0 || fromY >= height) {
+                // The exposed rows have not been drawn
+                Arrays.fill(pixels, index, index + width, 0);
+                Arrays.fill(iterations, index, index + width, 0);
+                Arrays.fill(fractions, index, index + width, 0);
+                Arrays.fill(blockSizes, index, index + width, NOT_DRAWN);
+            } else {
+                // The moved pixels are exact, and the exposed columns have not been drawn
+                System.arraycopy(pixels, fromY * width + fromX, pixels, index + toX, length);
+                System.arraycopy(iterations, fromY * width + fromX, iterations, index + toX, length);
+                System.arraycopy(fractions, fromY * width + fromX, fractions, index + toX, length);
+                Arrays.fill(blockSizes, index + toX, index + toX + length, (byte) 0);
+                final int exposedX = (dx > 0) ? 0 : length;
+                Arrays.fill(pixels, index + exposedX, index + exposedX + Math.abs(dx), 0);
+                Arrays.fill(iterations, index + exposedX, index + exposedX + Math.abs(dx), 0);
+                Arrays.fill(fractions, index + exposedX, index + exposedX + Math.abs(dx), 0);
+                Arrays.fill(blockSizes, index + exposedX, index + exposedX + Math.abs(dx), NOT_DRAWN);
+            }
+        }
+        setOffset(0, 0);
+    }
+
+    /**
+     * Clears the image and panel, and prepares for drawing an image of the given size.
+     * The image buffer is reused if it already has the given size.
+     */
+    void clear(int width, int height) {
+        if (image == null || image.getWidth() != width || image.getHeight() != height) {
+            image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            iterations = new int[width * height];
+            fractions = new int[width * height];
+            blockSizes = new byte[width * height];
+        } else {
+            Arrays.fill(pixels, 0);
+            Arrays.fill(iterations, 0);
+            Arrays.fill(fractions, 0);
+        }
+        Arrays.fill(blockSizes, NOT_DRAWN);
         repaint(new Rectangle(0, 0, getWidth(), getHeight()));
     }
 
+    /**
+     * Sets the colors used to draw the image, and recolors the pixels already drawn, using the
+     * stored escape times and fractions.
+     *
+     * @param palette The palette to use.
+     * @param offset The number of palette colors to rotate the colors, used to cycle the colors.
+     * @param smooth True to interpolate between the colors, using the fractions of the escape times.
+     */
+    void setColors(Palette palette, int offset, boolean smooth) {
+        this.palette = palette;
+        this.colorOffset = offset;
+        this.smooth = smooth;
+        if (image == null || colorTable == null) {
+            return;
+        }
+
+        colorTable = createColorTable();
+        for (int i = 0; i < pixels.length; i++) {
+            if (blockSizes[i] != NOT_DRAWN) {
+                pixels[i] = toRgb(iterations[i], fractions[i]);
+            }
+        }
+        repaint();
+    }
+
+    /**
+     * Returns the color of a pixel with the given escape time and fraction, using the color table.
+     */
+    private int toRgb(int escapeTime, int fraction) {
+        return smooth ? ColorMap.toSmoothRgb(colorTable, escapeTime, fraction) : colorTable[escapeTime];
+    }
+
+    private int[] createColorTable() {
+        return ColorMap.createTable(palette, colorTableIterations, colorOffset);
+    }
+
     /**
      * Draws one line in the image.
+     *
+     * @param line The line to draw.
+     * @param maxIterations The maximum number of iterations used to calculate the line.
+     * @return The area of the image that was drawn.
      */
-    void draw(Line line) {
-        int y = line.getY();
-        int[] rgb = line.getRGB();
-        for (int x = 0; x < rgb.length; x++) {
-            image.setRGB(x, y, rgb[x]);
+    Rectangle draw(Line line, int maxIterations) {
+        if (colorTable == null || colorTableIterations != maxIterations) {
+            colorTableIterations = maxIterations;
+            colorTable = createColorTable();
         }
+
+        final int width = image.getWidth();
+        final int firstX = line.getX();
+        final int y = line.getY();
+        if (line.getStep() == 1 && line.getBlockSize() == 1) {
+            // Decode the escape times, and convert them to colors in the image
+            final int index = y * width + firstX;
+            final int end = index + line.getWidth();
+            line.getIterations(iterations, index);
+            line.getFractions(fractions, index);
+            for (int i = index; i < end; i++) {
+                pixels[i] = toRgb(iterations[i], fractions[i]);
+            }
+            Arrays.fill(blockSizes, index, end, (byte) 0);
+            return new Rectangle(firstX, y, line.getWidth(), 1);
+        }
+        return drawBlocks(line);
     }
 
     /**
-     * Finishes by repainting the panel when the image is complete.
+     * Draws a sampled line as blocks of pixels, without overwriting pixels drawn by a finer pass.
      */
-    void finish() {
-        repaint(new Rectangle(0, 0, getWidth(), getHeight()));
+    private Rectangle drawBlocks(Line line) {
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        final int firstX = line.getX();
+        final int y = line.getY();
+        final int step = line.getStep();
+        final int blockSize = line.getBlockSize();
+        if (samples.length < line.getWidth()) {
+            samples = new int[line.getWidth()];
+            sampleFractions = new int[line.getWidth()];
+        }
+        line.getIterations(samples, 0);
+        line.getFractions(sampleFractions, 0);
+
+        for (int i = 0; i < line.getWidth(); i++) {
+            final int escapeTime = samples[i];
+            final int fraction = sampleFractions[i];
+            final int rgb = toRgb(escapeTime, fraction);
+            final int sampleX = firstX + i * step;
+            for (int blockY = y; blockY < Math.min(y + blockSize, height); blockY++) {
+                for (int blockX = sampleX; blockX < Math.min(sampleX + blockSize, width); blockX++) {
+                    // The sample itself is exact, the rest of the block is an approximation
+                    final byte size = (blockX == sampleX && blockY == y) ? 0 : (byte) blockSize;
+                    final int index = blockY * width + blockX;
+                    if (size < blockSizes[index]) {
+                        blockSizes[index] = size;
+                        iterations[index] = escapeTime;
+                        fractions[index] = fraction;
+                        pixels[index] = rgb;
+                    }
+                }
+            }
+        }
+        final int right = Math.min(firstX + (line.getWidth() - 1) * step + blockSize, width);
+        final int bottom = Math.min(y + blockSize, height);
+        return new Rectangle(firstX, y, right - firstX, bottom - y);
     }
 }
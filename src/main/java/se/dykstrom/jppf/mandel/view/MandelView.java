@@ -18,13 +18,18 @@
 package se.dykstrom.jppf.mandel.view;
 
 import se.dykstrom.jppf.mandel.model.Line;
+import se.dykstrom.jppf.mandel.pan.PanEvent;
+import se.dykstrom.jppf.mandel.pan.PanListener;
+import se.dykstrom.jppf.mandel.pan.PanTracker;
 import se.dykstrom.jppf.mandel.rubberband.RubberBandSelector;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Creates the main view and all its components.
@@ -38,8 +43,17 @@ public class MandelView extends JFrame {
     private JMenuItem exitMenuItem;
     private JMenuItem newMenuItem;
     private JMenuItem undoMenuItem;
+    private JCheckBoxMenuItem probeMenuItem;
+    private JCheckBoxMenuItem marianiSilverMenuItem;
+    private JCheckBoxMenuItem progressiveMenuItem;
+    private JCheckBoxMenuItem balanceMenuItem;
+    private JCheckBoxMenuItem mirrorMenuItem;
+    private final Map<Palette, JRadioButtonMenuItem> paletteMenuItems = new EnumMap<>(Palette.class);
+    private JCheckBoxMenuItem smoothColorsMenuItem;
+    private JCheckBoxMenuItem cycleColorsMenuItem;
 
     private RubberBandSelector rubberBandSelector;
+    private PanTracker panTracker;
 
     public MandelView() {
         initComponents();
@@ -57,10 +71,57 @@ public class MandelView extends JFrame {
         return undoMenuItem;
     }
 
+    public JCheckBoxMenuItem getProbeMenuItem() {
+        return probeMenuItem;
+    }
+
+    public JCheckBoxMenuItem getMarianiSilverMenuItem() {
+        return marianiSilverMenuItem;
+    }
+
+    public JCheckBoxMenuItem getProgressiveMenuItem() {
+        return progressiveMenuItem;
+    }
+
+    public JCheckBoxMenuItem getBalanceMenuItem() {
+        return balanceMenuItem;
+    }
+
+    public JCheckBoxMenuItem getMirrorMenuItem() {
+        return mirrorMenuItem;
+    }
+
+    public JRadioButtonMenuItem getPaletteMenuItem(Palette palette) {
+        return paletteMenuItems.get(palette);
+    }
+
+    /**
+     * Returns the palette selected in the colors menu.
+     */
+    public Palette getSelectedPalette() {
+        return paletteMenuItems.entrySet().stream()
+                .filter(entry -> entry.getValue().isSelected())
+                .map(Map.Entry::getKey)
+                .findFirst()
+                .orElse(Palette.FIRE);
+    }
+
+    public JCheckBoxMenuItem getSmoothColorsMenuItem() {
+        return smoothColorsMenuItem;
+    }
+
+    public JCheckBoxMenuItem getCycleColorsMenuItem() {
+        return cycleColorsMenuItem;
+    }
+
     public RubberBandSelector getRubberBandSelector() {
         return rubberBandSelector;
     }
 
+    public PanTracker getPanTracker() {
+        return panTracker;
+    }
+
     /**
      * Returns the size of the image as a Dimension object.
      */
@@ -68,20 +129,89 @@ public class MandelView extends JFrame {
         return mandelPanel.getSize();
     }
 
+    /**
+     * Returns the size of the current image, that may differ from the size of the panel
+     * if the panel has been resized, or {@code null} if there is no image yet.
+     */
+    public Dimension getRasterSize() {
+        return mandelPanel.getImageSize();
+    }
+
     /**
      * Draws a new fractal image using the given image line data.
+     *
+     * @param lines The lines to draw.
+     * @param maxIterations The maximum number of iterations used to calculate the lines.
      */
-    public void drawImage(List<Line> lines) {
-        mandelPanel.clear();
+    public void drawImage(List<Line> lines, int maxIterations) {
+        Dimension imageSize = getImageSize();
+        clearImage((int) imageSize.getWidth(), (int) imageSize.getHeight());
+        drawLines(lines, maxIterations);
+    }
+
+    /**
+     * Clears the image, before drawing a new image of the given size chunk by chunk.
+     */
+    public void clearImage(int width, int height) {
+        mandelPanel.clear(width, height);
+    }
+
+    /**
+     * Moves the contents of the current image, before drawing the parts exposed by the move.
+     *
+     * @param dx The horizontal distance to move, positive to move the contents to the right.
+     * @param dy The vertical distance to move, positive to move the contents down.
+     */
+    public void shiftImage(int dx, int dy) {
+        mandelPanel.shift(dx, dy);
+    }
+
+    /**
+     * Sets the colors used to draw the image, and recolors the current image without
+     * calculating it again.
+     *
+     * @param palette The palette to use.
+     * @param offset The number of palette colors to rotate the colors, used to cycle the colors.
+     * @param smooth True to interpolate between the colors, using the fractions of the escape times.
+     */
+    public void setColors(Palette palette, int offset, boolean smooth) {
+        mandelPanel.setColors(palette, offset, smooth);
+    }
+
+    /**
+     * Draws the given lines, that are a part of the current image, and repaints
+     * only the area affected by the lines.
+     *
+     * @param lines The lines to draw.
+     * @param maxIterations The maximum number of iterations used to calculate the lines.
+     */
+    public void drawLines(List<Line> lines, int maxIterations) {
+        Rectangle dirty = null;
         for (Line line : lines) {
-            mandelPanel.draw(line);
+            Rectangle area = mandelPanel.draw(line, maxIterations);
+            dirty = (dirty == null) ? area : dirty.union(area);
+        }
+        if (dirty != null) {
+            mandelPanel.repaint(dirty);
         }
-        mandelPanel.finish();
     }
 
     private void initComponents() {
         mandelPanel = new MandelPanel();
         rubberBandSelector = new RubberBandSelector(mandelPanel);
+        panTracker = new PanTracker(mandelPanel);
+        panTracker.addPanListener(new PanListener() {
+            @Override
+            public void panning(PanEvent event) {
+                mandelPanel.setOffset(event.getDx(), event.getDy());
+            }
+
+            @Override
+            public void panned(PanEvent event) {
+                // The image is shifted by the controller, if the pan results in a new image
+                mandelPanel.setOffset(0, 0);
+            }
+        });
 
         setJMenuBar(createMenuBar());
         setDefaultCloseOperation(WindowConstants.DO_NOTHING_ON_CLOSE);
@@ -118,9 +248,68 @@ public class MandelView extends JFrame {
         undoMenuItem.setText("Undo");
         editMenu.add(undoMenuItem);
 
+        JMenu optionsMenu = new JMenu();
+        optionsMenu.setText("Options");
+        optionsMenu.setMnemonic('O');
+
+        probeMenuItem = new JCheckBoxMenuItem();
+        probeMenuItem.setText("Probe Iterations");
+        probeMenuItem.setToolTipText("Estimate the number of iterations from a low resolution probe image");
+        optionsMenu.add(probeMenuItem);
+
+        marianiSilverMenuItem = new JCheckBoxMenuItem();
+        marianiSilverMenuItem.setText("Mariani-Silver Rendering");
+        marianiSilverMenuItem.setToolTipText("Fill rectangles with a uniform border instead of calculating every pixel");
+        optionsMenu.add(marianiSilverMenuItem);
+
+        progressiveMenuItem = new JCheckBoxMenuItem();
+        progressiveMenuItem.setText("Progressive Rendering");
+        progressiveMenuItem.setToolTipText("Show a low resolution preview first, and refine it in several passes");
+        progressiveMenuItem.setSelected(true);
+        optionsMenu.add(progressiveMenuItem);
+
+        balanceMenuItem = new JCheckBoxMenuItem();
+        balanceMenuItem.setText("Balance Task Cost");
+        balanceMenuItem.setToolTipText("Divide the image into tiles of equal estimated cost, instead of equal size");
+        balanceMenuItem.setSelected(true);
+        optionsMenu.add(balanceMenuItem);
+
+        mirrorMenuItem = new JCheckBoxMenuItem();
+        mirrorMenuItem.setText("Mirror Real Axis");
+        mirrorMenuItem.setToolTipText("Calculate only one side of the real axis, and mirror the other side");
+        mirrorMenuItem.setSelected(true);
+        optionsMenu.add(mirrorMenuItem);
+
+        JMenu colorsMenu = new JMenu();
+        colorsMenu.setText("Colors");
+        colorsMenu.setMnemonic('C');
+
+        ButtonGroup paletteGroup = new ButtonGroup();
+        for (Palette palette : Palette.values()) {
+            JRadioButtonMenuItem paletteMenuItem = new JRadioButtonMenuItem();
+            paletteMenuItem.setText(palette.toString());
+            paletteMenuItem.setSelected(palette == Palette.FIRE);
+            paletteGroup.add(paletteMenuItem);
+            colorsMenu.add(paletteMenuItem);
+            paletteMenuItems.put(palette, paletteMenuItem);
+        }
+        colorsMenu.addSeparator();
+
+        smoothColorsMenuItem = new JCheckBoxMenuItem();
+        smoothColorsMenuItem.setText("Smooth Colors");
+        smoothColorsMenuItem.setToolTipText("Use fractional escape times to remove the color bands");
+        colorsMenu.add(smoothColorsMenuItem);
+
+        cycleColorsMenuItem = new JCheckBoxMenuItem();
+        cycleColorsMenuItem.setText("Cycle Colors");
+        cycleColorsMenuItem.setToolTipText("Rotate the colors of the palette continuously");
+        colorsMenu.add(cycleColorsMenuItem);
+
         JMenuBar menuBar = new JMenuBar();
         menuBar.add(fileMenu);
         menuBar.add(editMenu);
+        menuBar.add(optionsMenu);
+        menuBar.add(colorsMenu);
         return menuBar;
     }
 }
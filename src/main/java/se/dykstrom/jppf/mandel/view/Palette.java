@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2019 Johan Dykstrom
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package se.dykstrom.jppf.mandel.view;
+
+import java.awt.*;
+
+/**
+ * Defines the palettes available for coloring the image. Each palette is a gradient, defined
+ * by a number of evenly spaced color stops, and expanded to a fixed number of colors.
+ *
+ * @author Johan Dykstrom
+ */
+public enum Palette {
+
+    /** From black, through red, to yellow. */
+    FIRE("Fire", Color.BLACK, Color.RED, Color.YELLOW),
+
+    /** From black, through blue and cyan, to white. */
+    OCEAN("Ocean", Color.BLACK, new Color(0, 0, 160), Color.CYAN, Color.WHITE),
+
+    /** From black to white. */
+    GRAYSCALE("Grayscale", Color.BLACK, Color.WHITE),
+
+    /** Through all hues, ending with the color it started with, suitable for color cycling. */
+    RAINBOW("Rainbow", Color.RED, Color.YELLOW, Color.GREEN, Color.CYAN, Color.BLUE, Color.MAGENTA, Color.RED);
+
+    /** The number of colors in each palette. */
+    static final int SIZE = 256 * 2;
+
+    private final String displayName;
+    private final int[] colors;
+
+    Palette(String displayName, Color... stops) {
+        this.displayName = displayName;
+        this.colors = interpolate(stops);
+    }
+
+    /**
+     * Expands the color stops to {@link #SIZE} colors, interpolating linearly between the stops.
+     */
+    private static int[] interpolate(Color[] stops) {
+        final int[] colors = new int[SIZE];
+        final int segmentLength = SIZE / (stops.length - 1);
+        for (int i = 0; i < SIZE; i++) {
+            final int segment = Math.min(i / segmentLength, stops.length - 2);
+            final int step = i - segment * segmentLength;
+            final int length = (segment == stops.length - 2) ? SIZE - segment * segmentLength : segmentLength;
+            colors[i] = mix(stops[segment], stops[segment + 1], step, length - 1);
+        }
+        return colors;
+    }
+
+    private static int mix(Color from, Color to, int step, int steps) {
+        final int red = from.getRed() + (to.getRed() - from.getRed()) * step / steps;
+        final int green = from.getGreen() + (to.getGreen() - from.getGreen()) * step / steps;
+        final int blue = from.getBlue() + (to.getBlue() - from.getBlue()) * step / steps;
+        return new Color(red, green, blue).getRGB();
+    }
+
+    /**
+     * Returns the colors of this palette. The returned array must not be modified.
+     */
+    int[] getColors() {
+        return colors;
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+}